@@ -20,17 +20,29 @@ import com.reandroid.arsc.chunk.TableBlock;
 import com.reandroid.arsc.pool.TableStringPool;
 import com.reandroid.arsc.pool.builder.StringPoolMerger;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.*;
+import java.util.concurrent.*;
 
-public class ApkBundle {
+public class ApkBundle implements Closeable {
     private final Map<String, ApkModule> mModulesMap;
     private APKLogger apkLogger;
+    private ExecutorService mExecutorService;
     public ApkBundle(){
         this.mModulesMap=new HashMap<>();
     }
+    /**
+     * When set, table string pools of modules are loaded and merged concurrently on the given
+     * executor (see {@link StringPoolMerger#setExecutorService(ExecutorService)}).
+     * The executor is not shutdown by this class.
+     * */
+    public void setExecutorService(ExecutorService executorService){
+        this.mExecutorService=executorService;
+    }
 
     public ApkModule mergeModules() throws IOException {
         List<ApkModule> moduleList=getApkModuleList();
@@ -71,14 +83,24 @@ public class ApkBundle {
                 new BlockInputSource<>(TableBlock.FILE_NAME, createdTable);
         mergedModule.getApkArchive().add(inputSource);
 
-        StringPoolMerger poolMerger = new StringPoolMerger();
-
+        List<ApkModule> moduleList=new ArrayList<>();
         for(ApkModule apkModule:getModules()){
-            if(!apkModule.hasTableBlock()){
-                continue;
+            if(apkModule.hasTableBlock()){
+                moduleList.add(apkModule);
+            }
+        }
+        ExecutorService executorService=mExecutorService;
+        StringPoolMerger poolMerger = new StringPoolMerger();
+        poolMerger.setExecutorService(executorService);
+        if(executorService!=null){
+            loadStringPools(executorService, moduleList, poolMerger);
+        }else {
+            int total=moduleList.size();
+            for(int i=0;i<total;i++){
+                TableStringPool stringPool = moduleList.get(i).getVolatileTableStringPool();
+                poolMerger.add(stringPool);
+                logLoadedPool(i+1, total, stringPool);
             }
-            TableStringPool stringPool = apkModule.getVolatileTableStringPool();
-            poolMerger.add(stringPool);
         }
 
         poolMerger.mergeTo(createdTable.getTableStringPool());
@@ -87,6 +109,47 @@ public class ApkBundle {
                 +", style="+poolMerger.getMergedStyleStrings()
                 +", strings="+poolMerger.getMergedStrings());
     }
+    private void loadStringPools(ExecutorService executorService, List<ApkModule> moduleList,
+                                 StringPoolMerger poolMerger) throws IOException {
+        CompletionService<TableStringPool> completionService=new ExecutorCompletionService<>(executorService);
+        int total=moduleList.size();
+        List<Future<TableStringPool>> futures=new ArrayList<>(total);
+        try {
+            for(ApkModule apkModule:moduleList){
+                futures.add(completionService.submit(new LoadStringPoolTask(apkModule)));
+            }
+            for(int i=0;i<total;i++){
+                TableStringPool stringPool=awaitResult(completionService);
+                poolMerger.add(stringPool);
+                logLoadedPool(i+1, total, stringPool);
+            }
+        }finally {
+            for(Future<TableStringPool> future:futures){
+                future.cancel(true);
+            }
+        }
+    }
+    private static TableStringPool awaitResult(CompletionService<TableStringPool> completionService) throws IOException {
+        try {
+            return completionService.take().get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(ex.getMessage());
+        } catch (ExecutionException ex) {
+            Throwable cause=ex.getCause();
+            if(cause instanceof IOException){
+                throw (IOException) cause;
+            }
+            if(cause instanceof RuntimeException){
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+    private void logLoadedPool(int count, int total, TableStringPool stringPool){
+        logVerbose("Loaded string pool "+count+"/"+total
+                +", strings="+stringPool.countStrings());
+    }
     private String generateMergedModuleName(){
         Set<String> moduleNames=mModulesMap.keySet();
         String merged="merged";
@@ -165,6 +228,15 @@ public class ApkBundle {
     public Collection<ApkModule> getModules(){
         return mModulesMap.values();
     }
+    /**
+     * Closes all modules, the merged module reads entries of them thus must be written before
+     * */
+    @Override
+    public void close() throws IOException {
+        for(ApkModule module:getApkModuleList()){
+            module.close();
+        }
+    }
     private boolean hasOneTableBlock(){
         for(ApkModule apkModule:getModules()){
             if(apkModule.hasTableBlock()){
@@ -191,4 +263,15 @@ public class ApkBundle {
             apkLogger.logVerbose(msg);
         }
     }
+
+    private static class LoadStringPoolTask implements Callable<TableStringPool> {
+        private final ApkModule apkModule;
+        LoadStringPoolTask(ApkModule apkModule){
+            this.apkModule=apkModule;
+        }
+        @Override
+        public TableStringPool call() throws IOException {
+            return apkModule.getVolatileTableStringPool();
+        }
+    }
 }
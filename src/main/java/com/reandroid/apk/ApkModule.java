@@ -26,13 +26,14 @@ import com.reandroid.arsc.item.TableString;
 import com.reandroid.arsc.pool.TableStringPool;
 import com.reandroid.arsc.value.Entry;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
 import java.util.zip.ZipEntry;
 
-public class ApkModule {
+public class ApkModule implements Closeable {
     private final String moduleName;
     private final APKArchive apkArchive;
     private boolean loadDefaultFramework = true;
@@ -40,6 +41,7 @@ public class ApkModule {
     private AndroidManifestBlock mManifestBlock;
     private final UncompressedFiles mUncompressedFiles;
     private APKLogger apkLogger;
+    private boolean deduplicateEntries;
     public ApkModule(String moduleName, APKArchive apkArchive){
         this.moduleName=moduleName;
         this.apkArchive=apkArchive;
@@ -78,6 +80,33 @@ public class ApkModule {
         writeApk(file, progress, null);
     }
     public void writeApk(File file, WriteProgress progress, WriteInterceptor interceptor) throws IOException {
+        ZipSerializer serializer=createApkSerializer(progress, interceptor);
+        serializer.writeZip(file);
+        long saved=serializer.getDeduplicatedBytes();
+        if(saved>0){
+            logMessage("Deduplicated entries, saved bytes: "+saved);
+        }
+    }
+    /**
+     * When enabled, entries with identical content are written once on {@link #writeApk(File)},
+     * see {@link ZipSerializer#setDeduplicate(boolean)}
+     * */
+    public void setDeduplicateEntries(boolean deduplicateEntries){
+        this.deduplicateEntries=deduplicateEntries;
+    }
+    /**
+     * Updates the source apk file in place, unchanged entries are not rewritten.
+     * The module must be loaded from apk file e.g {@link #loadApkFile(File)}
+     * */
+    public void writeApkIncremental(WriteProgress progress) throws IOException {
+        ZipReader zipReader=getApkArchive().getZipReader();
+        if(zipReader==null){
+            throw new IOException("Module is not loaded from apk file: "+getModuleName());
+        }
+        ZipSerializer serializer=createApkSerializer(progress, null);
+        serializer.writeIncremental(zipReader);
+    }
+    private ZipSerializer createApkSerializer(WriteProgress progress, WriteInterceptor interceptor) throws IOException {
         uncompressNonXmlResFiles();
         APKArchive archive=getApkArchive();
         InputSource table=archive.getInputSource(TableBlock.FILE_NAME);
@@ -97,10 +126,11 @@ public class ApkModule {
         if(manifest!=null){
             manifest.setSort(0);
         }
-        ZipSerializer serializer=new ZipSerializer(archive.listInputSources());
+        ZipSerializer serializer=archive.createApkSerializer();
         serializer.setWriteProgress(progress);
         serializer.setWriteInterceptor(interceptor);
-        serializer.writeZip(file);
+        serializer.setDeduplicate(deduplicateEntries);
+        return serializer;
     }
     private void uncompressNonXmlResFiles() throws IOException {
         for(ResFile resFile:listResFiles()){
@@ -272,6 +302,7 @@ public class ApkModule {
             throw new IOException("Module don't have: "+TableBlock.FILE_NAME);
         }
         if((inputSource instanceof ZipEntrySource)
+                ||(inputSource instanceof ZipReaderSource)
                 ||(inputSource instanceof FileInputSource)){
             InputStream inputStream = inputSource.openStream();
             TableStringPool stringPool = TableStringPool.readFromTable(inputStream);
@@ -312,6 +343,13 @@ public class ApkModule {
     public APKArchive getApkArchive() {
         return apkArchive;
     }
+    /**
+     * Releases the apk file this module is loaded from, see {@link APKArchive#close()}
+     * */
+    @Override
+    public void close() throws IOException {
+        getApkArchive().close();
+    }
     public void setLoadDefaultFramework(boolean loadDefaultFramework) {
         this.loadDefaultFramework = loadDefaultFramework;
     }
@@ -15,7 +15,9 @@
   */
 package com.reandroid.apk;
 
+import com.reandroid.archive.ExtractProgress;
 import com.reandroid.archive.InputSource;
+import com.reandroid.archive.ZipExtractor;
 import com.reandroid.apk.xmldecoder.XMLBagDecoder;
 import com.reandroid.apk.xmldecoder.XMLNamespaceValidator;
 import com.reandroid.arsc.chunk.PackageBlock;
@@ -39,17 +41,26 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 
  public class ApkModuleXmlDecoder {
     private final ApkModule apkModule;
     private final Map<Integer, Set<ResConfig>> decodedEntries;
     private XMLBagDecoder xmlBagDecoder;
     private final Set<String> mDecodedPaths;
+    private ExecutorService executorService;
     public ApkModuleXmlDecoder(ApkModule apkModule){
         this.apkModule=apkModule;
         this.decodedEntries = new HashMap<>();
         this.mDecodedPaths = new HashSet<>();
     }
+    /**
+     * When set, root files are extracted concurrently on the given executor.
+     * The executor is not shutdown by this class.
+     * */
+    public void setExecutorService(ExecutorService executorService){
+        this.executorService = executorService;
+    }
     public void decodeTo(File outDir)
             throws IOException, XMLException {
         this.decodedEntries.clear();
@@ -272,25 +283,23 @@ import java.util.*;
     private void extractRootFiles(File outDir) throws IOException {
         logMessage("Extracting root files");
         File rootDir = new File(outDir, "root");
+        List<InputSource> sourceList = new ArrayList<>();
         for(InputSource inputSource:apkModule.getApkArchive().listInputSources()){
             if(containsDecodedPath(inputSource.getAlias())){
                 continue;
             }
-            extractRootFiles(rootDir, inputSource);
+            sourceList.add(inputSource);
             addDecodedPath(inputSource.getAlias());
         }
-    }
-    private void extractRootFiles(File rootDir, InputSource inputSource) throws IOException {
-        String path=inputSource.getAlias();
-        path=path.replace(File.separatorChar, '/');
-        File file=new File(rootDir, path);
-        File dir=file.getParentFile();
-        if(!dir.exists()){
-            dir.mkdirs();
-        }
-        FileOutputStream outputStream=new FileOutputStream(file);
-        inputSource.write(outputStream);
-        outputStream.close();
+        ZipExtractor extractor = new ZipExtractor(sourceList);
+        extractor.setExecutorService(executorService);
+        extractor.setExtractProgress(new ExtractProgress() {
+            @Override
+            public void onExtractFile(String path, long writtenBytes) {
+                logVerbose(path);
+            }
+        });
+        extractor.extract(rootDir);
     }
     private boolean containsDecodedPath(String path){
         return mDecodedPaths.contains(path);
@@ -44,6 +44,12 @@ public class JsonXmlInputSource extends InputSource {
         ResXmlDocument resXmlDocument = getResXmlBlock();
         return resXmlDocument.countBytes();
     }
+    @Override
+    public long getCrc() throws IOException {
+        CrcOutputStream outputStream=new CrcOutputStream();
+        this.write(outputStream);
+        return outputStream.getCrcValue();
+    }
     private ResXmlDocument getResXmlBlock() throws IOException{
         logVerbose("From json: "+getAlias());
         ResXmlDocument resXmlDocument =newInstance();
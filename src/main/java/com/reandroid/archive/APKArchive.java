@@ -15,6 +15,7 @@
   */
 package com.reandroid.archive;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -22,9 +23,12 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
 
-public class APKArchive extends ZipArchive {
+public class APKArchive extends ZipArchive implements Closeable {
+    private ZipReader mZipReader;
+    private ZipFile mZipFile;
     public APKArchive(Map<String, InputSource> entriesMap){
         super(entriesMap);
     }
@@ -35,15 +39,73 @@ public class APKArchive extends ZipArchive {
         sortApkFiles(new ArrayList<>(listInputSources()));
     }
     public long writeApk(File outApk) throws IOException{
-        ZipSerializer serializer=new ZipSerializer(listInputSources());
+        ZipSerializer serializer=createApkSerializer();
         return serializer.writeZip(outApk);
     }
     public long writeApk(OutputStream outputStream) throws IOException{
-        ZipSerializer serializer=new ZipSerializer(listInputSources());
+        ZipSerializer serializer=createApkSerializer();
         return serializer.writeZip(outputStream);
     }
+    /**
+     * Updates the apk file this archive is loaded from without rewriting unchanged entries,
+     * see {@link ZipSerializer#writeIncremental(ZipReader)}. To compact the file afterwards,
+     * load it again and call {@link #writeApk(File)}
+     * */
+    public long writeApkIncremental() throws IOException{
+        ZipReader zipReader=getZipReader();
+        if(zipReader==null){
+            throw new IOException("Archive is not loaded from zip file");
+        }
+        ZipSerializer serializer=createApkSerializer();
+        return serializer.writeIncremental(zipReader);
+    }
+    /**
+     * Returns the reader this archive is loaded from, or null
+     * */
+    public ZipReader getZipReader(){
+        return mZipReader;
+    }
+    /**
+     * Releases the zip file this archive is loaded from, its entries can not be read afterwards
+     * */
+    @Override
+    public void close() throws IOException {
+        ZipReader zipReader=mZipReader;
+        if(zipReader!=null){
+            zipReader.close();
+        }
+        ZipFile zipFile=mZipFile;
+        if(zipFile!=null){
+            mZipFile=null;
+            zipFile.close();
+        }
+    }
+    /**
+     * Serializer with STORED entries aligned, the output needs no further zip-align
+     * */
+    public ZipSerializer createApkSerializer(){
+        ZipSerializer serializer=new ZipSerializer(listInputSources());
+        serializer.setAlignment(ZipSerializer.ALIGNMENT_4, ZipSerializer.ALIGNMENT_PAGE);
+        return serializer;
+    }
     public static APKArchive loadZippedApk(File zipFile) throws IOException {
-        return loadZippedApk(new ZipFile(zipFile));
+        ZipReader zipReader;
+        try {
+            zipReader=new ZipReader(zipFile);
+        } catch (ZipException ex) {
+            // zip64 or too large to map
+            ZipFile file=new ZipFile(zipFile);
+            APKArchive apkArchive=loadZippedApk(file);
+            apkArchive.mZipFile=file;
+            return apkArchive;
+        }
+        return loadZippedApk(zipReader);
+    }
+    public static APKArchive loadZippedApk(ZipReader zipReader) {
+        Map<String, InputSource> entriesMap = InputSourceUtil.mapZipFileSources(zipReader);
+        APKArchive apkArchive = new APKArchive(entriesMap);
+        apkArchive.mZipReader = zipReader;
+        return apkArchive;
     }
     public static APKArchive loadZippedApk(ZipFile zipFile) {
         Map<String, InputSource> entriesMap = InputSourceUtil.mapZipFileSources(zipFile);
@@ -51,7 +113,15 @@ public class APKArchive extends ZipArchive {
     }
     public static void repackApk(File apkFile) throws IOException{
         APKArchive apkArchive =loadZippedApk(apkFile);
-        apkArchive.writeApk(apkFile);
+        File tmp=new File(apkFile.getParentFile(), apkFile.getName()+".tmp");
+        try {
+            apkArchive.writeApk(tmp);
+        } finally {
+            apkArchive.close();
+        }
+        if(!apkFile.delete() || !tmp.renameTo(apkFile)){
+            throw new IOException("Failed to replace: "+apkFile);
+        }
     }
     public static void sortApkFiles(List<InputSource> sourceList){
         Comparator<InputSource> cmp=new Comparator<InputSource>() {
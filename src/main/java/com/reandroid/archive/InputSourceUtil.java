@@ -43,7 +43,35 @@ public class InputSourceUtil {
         return path;
     }
 
+    public static Map<String, InputSource> mapZipFileSources(ZipReader zipReader){
+        Map<String, InputSource> results=new HashMap<>();
+        int i=0;
+        for(ZipReaderSource source:zipReader.listInputSources()){
+            source.setSort(i);
+            results.put(source.getName(), source);
+            i++;
+        }
+        return results;
+    }
+    public static List<InputSource> listZipFileSources(ZipReader zipReader){
+        List<InputSource> results=new ArrayList<>();
+        int i=0;
+        for(ZipReaderSource source:zipReader.listInputSources()){
+            source.setSort(i);
+            results.add(source);
+            i++;
+        }
+        return results;
+    }
     public static Map<String, InputSource> mapZipFileSources(ZipFile zipFile){
+        return mapZipFileSources(zipFile, null);
+    }
+    /**
+     * Entries are read from the given zip file, unchanged entries are copied raw (without
+     * recompressing) from the given reader of the same file. The reader may be null,
+     * both are owned and closed by the caller.
+     * */
+    public static Map<String, InputSource> mapZipFileSources(ZipFile zipFile, ZipReader zipReader){
         Map<String, InputSource> results=new HashMap<>();
         Enumeration<? extends ZipEntry> entriesEnum = zipFile.entries();
         int i=0;
@@ -52,7 +80,7 @@ public class InputSourceUtil {
             if(zipEntry.isDirectory()){
                 continue;
             }
-            ZipEntrySource source=new ZipEntrySource(zipFile, zipEntry);
+            ZipEntrySource source=new ZipEntrySource(zipFile, zipEntry, zipReader);
             source.setSort(i);
             results.put(source.getName(), source);
             i++;
@@ -60,6 +88,12 @@ public class InputSourceUtil {
         return results;
     }
     public static List<InputSource> listZipFileSources(ZipFile zipFile){
+        return listZipFileSources(zipFile, null);
+    }
+    /**
+     * See {@link #mapZipFileSources(ZipFile, ZipReader)}
+     * */
+    public static List<InputSource> listZipFileSources(ZipFile zipFile, ZipReader zipReader){
         List<InputSource> results=new ArrayList<>();
         Enumeration<? extends ZipEntry> entriesEnum = zipFile.entries();
         int i=0;
@@ -68,7 +102,7 @@ public class InputSourceUtil {
             if(zipEntry.isDirectory()){
                 continue;
             }
-            ZipEntrySource source=new ZipEntrySource(zipFile, zipEntry);
+            ZipEntrySource source=new ZipEntrySource(zipFile, zipEntry, zipReader);
             source.setSort(i);
             results.add(source);
         }
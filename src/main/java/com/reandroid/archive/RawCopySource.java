@@ -0,0 +1,34 @@
+ /*
+  *  Copyright (C) 2022 github.com/REAndroid
+  *
+  *  Licensed under the Apache License, Version 2.0 (the "License");
+  *  you may not use this file except in compliance with the License.
+  *  You may obtain a copy of the License at
+  *
+  *      http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package com.reandroid.archive;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Source of an archive entry that could be written to output archive without
+ * inflating and deflating, i.e copying compressed data, crc and sizes as they are
+ * */
+interface RawCopySource {
+    /**
+     * Returns true if the compression method is not changed since loaded
+     * */
+    boolean isRawCopyable();
+    long getRawCrc();
+    long getRawSize();
+    long getCompressedSize();
+    long writeRaw(OutputStream outputStream) throws IOException;
+}
@@ -25,6 +25,10 @@ import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
 
 
+/**
+ * Aligns an existing zip file, for newly written archives prefer
+ * {@link ZipSerializer#setAlignment(int, int)} which aligns on the first pass
+ * */
 public class ZipAlign {
     private static final int ZIP_ENTRY_HEADER_LEN = 30;
     private static final int ZIP_ENTRY_VERSION = 20;
@@ -17,11 +17,12 @@ package com.reandroid.archive;
 
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
 
 public class ZipArchive {
@@ -34,24 +35,21 @@ public class ZipArchive {
     }
 
     public void extract(File outDir) throws IOException {
-        for(InputSource inputSource:listInputSources()){
-            extract(outDir, inputSource);
-        }
-    }
-    private void extract(File outDir, InputSource inputSource) throws IOException {
-        File file=toOutFile(outDir, inputSource.getAlias());
-        File dir=file.getParentFile();
-        if(dir!=null && !dir.exists()){
-            dir.mkdirs();
-        }
-        FileOutputStream outputStream=new FileOutputStream(file);
-        inputSource.write(outputStream);
-        outputStream.close();
-        inputSource.disposeInputSource();
-    }
-    private File toOutFile(File outDir, String path){
-        path=path.replace('/', File.separatorChar);
-        return new File(outDir, path);
+        createExtractor().extract(outDir);
+    }
+    /**
+     * Extracts all entries concurrently on the given executor, the executor is not shutdown
+     * */
+    public void extract(File outDir, ExecutorService executorService, ExtractProgress progress) throws IOException {
+        ZipExtractor extractor=createExtractor();
+        extractor.setExecutorService(executorService);
+        extractor.setExtractProgress(progress);
+        extractor.extract(outDir);
+    }
+    public ZipExtractor createExtractor(){
+        ZipExtractor extractor=new ZipExtractor(listInputSources());
+        extractor.setDisposeInputSource(true);
+        return extractor;
     }
     public void removeDir(String dirName){
         if(!dirName.endsWith("/")){
@@ -85,8 +83,19 @@ public class ZipArchive {
         return inputSource;
     }
     public void addArchive(File archiveFile) throws IOException {
-        ZipFile zipFile=new ZipFile(archiveFile);
-        add(zipFile);
+        ZipReader zipReader;
+        try {
+            zipReader=new ZipReader(archiveFile);
+        } catch (ZipException ex) {
+            // zip64 or too large to map
+            add(new ZipFile(archiveFile));
+            return;
+        }
+        add(zipReader);
+    }
+    public void add(ZipReader zipReader){
+        List<InputSource> sourceList = InputSourceUtil.listZipFileSources(zipReader);
+        this.addAll(sourceList);
     }
     public void addDirectory(File dir){
         addAll(InputSourceUtil.listDirectory(dir));
@@ -0,0 +1,210 @@
+ /*
+  *  Copyright (C) 2022 github.com/REAndroid
+  *
+  *  Licensed under the Apache License, Version 2.0 (the "License");
+  *  you may not use this file except in compliance with the License.
+  *  You may obtain a copy of the License at
+  *
+  *      http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package com.reandroid.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * Writes the (compressed) data of an InputSource while computing crc and sizes
+ * in the same pass. On parallel mode the data is kept on memory until written.
+ * */
+class ZipEntryData {
+    private final InputSource inputSource;
+    private final int method;
+    private final RawCopySource rawSource;
+    private long crc;
+    private long compressedSize;
+    private long size;
+    private ByteArrayOutputStream dataBuffer;
+    private String contentKey;
+    ZipEntryData(InputSource inputSource){
+        this.inputSource = inputSource;
+        this.method = inputSource.getMethod();
+        this.rawSource = toRawSource(inputSource);
+    }
+    /**
+     * Returns true if the entry is unchanged RawCopySource, thus its compressed data
+     * will be copied as it is and crc/sizes are known before write
+     * */
+    boolean isRaw(){
+        return rawSource != null;
+    }
+    InputSource getInputSource(){
+        return inputSource;
+    }
+    int getMethod(){
+        return method;
+    }
+    long getCrc(){
+        return crc;
+    }
+    long getCompressedSize(){
+        return compressedSize;
+    }
+    long getSize(){
+        return size;
+    }
+    /**
+     * Identity of the entry content for de-duplication: method, size and SHA-256 digest of
+     * compressed data for raw entry, otherwise of uncompressed data. Computed on first call
+     * by an additional read pass of the source.
+     * */
+    String getContentKey() throws IOException {
+        if(contentKey == null){
+            contentKey = computeContentKey();
+        }
+        return contentKey;
+    }
+    private String computeContentKey() throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+        DigestOutputStream digestOutput = new DigestOutputStream(new NullOutputStream(), digest);
+        StringBuilder builder = new StringBuilder();
+        long length;
+        if(rawSource != null){
+            length = rawSource.writeRaw(digestOutput);
+            builder.append("raw:");
+        }else {
+            length = inputSource.write(digestOutput);
+            builder.append("data:");
+        }
+        builder.append(method).append(':').append(length).append(':');
+        for(byte b : digest.digest()){
+            builder.append(HEX_CHARS[(b >> 4) & 0xf]).append(HEX_CHARS[b & 0xf]);
+        }
+        return builder.toString();
+    }
+    void compressToBuffer(Deflater deflater) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(DEFLATE_BUFFER_SIZE);
+        write(buffer, deflater);
+        this.dataBuffer = buffer;
+    }
+    void writeBuffer(OutputStream outputStream) throws IOException {
+        ByteArrayOutputStream buffer = this.dataBuffer;
+        buffer.writeTo(outputStream);
+        this.dataBuffer = null;
+    }
+    void write(OutputStream outputStream, Deflater deflater) throws IOException {
+        if(rawSource != null){
+            rawSource.writeRaw(outputStream);
+            return;
+        }
+        if(method == ZipEntry.STORED){
+            EntryOutputStream entryOutput = new EntryOutputStream(outputStream);
+            inputSource.write(entryOutput);
+            this.crc = entryOutput.getCrc();
+            this.size = entryOutput.getLength();
+            this.compressedSize = this.size;
+            return;
+        }
+        deflater.reset();
+        DeflaterOutputStream deflaterOutput = new DeflaterOutputStream(
+                new UnclosableOutputStream(outputStream), deflater, DEFLATE_BUFFER_SIZE);
+        EntryOutputStream entryOutput = new EntryOutputStream(deflaterOutput);
+        inputSource.write(entryOutput);
+        deflaterOutput.finish();
+        this.crc = entryOutput.getCrc();
+        this.size = deflater.getBytesRead();
+        this.compressedSize = deflater.getBytesWritten();
+    }
+    private RawCopySource toRawSource(InputSource inputSource){
+        if(!(inputSource instanceof RawCopySource)){
+            return null;
+        }
+        RawCopySource rawCopySource = (RawCopySource) inputSource;
+        if(!rawCopySource.isRawCopyable()){
+            return null;
+        }
+        this.crc = rawCopySource.getRawCrc();
+        this.compressedSize = rawCopySource.getCompressedSize();
+        this.size = rawCopySource.getRawSize();
+        return rawCopySource;
+    }
+    @Override
+    public String toString(){
+        return inputSource.getAlias() + ", method=" + method + ", size=" + size
+                + ", compressed=" + compressedSize;
+    }
+
+    static class EntryOutputStream extends FilterOutputStream {
+        private final CRC32 crc32;
+        private long length;
+        EntryOutputStream(OutputStream outputStream){
+            super(outputStream);
+            this.crc32 = new CRC32();
+        }
+        long getCrc(){
+            return crc32.getValue();
+        }
+        long getLength(){
+            return length;
+        }
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            crc32.update(b);
+            length++;
+        }
+        @Override
+        public void write(byte[] bytes, int offset, int len) throws IOException {
+            out.write(bytes, offset, len);
+            crc32.update(bytes, offset, len);
+            length += len;
+        }
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
+    static class NullOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+        @Override
+        public void write(byte[] bytes, int offset, int len) {
+        }
+    }
+    static class UnclosableOutputStream extends FilterOutputStream {
+        UnclosableOutputStream(OutputStream outputStream){
+            super(outputStream);
+        }
+        @Override
+        public void write(byte[] bytes, int offset, int len) throws IOException {
+            out.write(bytes, offset, len);
+        }
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
+
+    private static final int DEFLATE_BUFFER_SIZE = 1024 * 8;
+    private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+}
@@ -0,0 +1,333 @@
+ /*
+  *  Copyright (C) 2022 github.com/REAndroid
+  *
+  *  Licensed under the Apache License, Version 2.0 (the "License");
+  *  you may not use this file except in compliance with the License.
+  *  You may obtain a copy of the License at
+  *
+  *      http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package com.reandroid.archive;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.zip.ZipEntry;
+
+/**
+ * Local/central header fields of a single archive entry
+ * */
+class ZipEntryRecord {
+    private final byte[] name;
+    private final int method;
+    private final int flags;
+    private final int dosTime;
+    private final int dosDate;
+    private long crc;
+    private long compressedSize;
+    private long size;
+    private long localOffset;
+    private long dataOffset = -1;
+    private int alignment;
+    ZipEntryRecord(String name, int method, boolean dataDescriptor, long time){
+        this.name = name.getBytes(StandardCharsets.UTF_8);
+        this.method = method;
+        int flags = FLAG_UTF8;
+        if(dataDescriptor){
+            flags |= FLAG_DATA_DESCRIPTOR;
+        }
+        this.flags = flags;
+        GregorianCalendar calendar = new GregorianCalendar();
+        calendar.setTimeInMillis(time);
+        int year = calendar.get(Calendar.YEAR);
+        if(year < 1980){
+            this.dosDate = 0x21;
+            this.dosTime = 0;
+        }else {
+            this.dosDate = ((year - 1980) << 9)
+                    | ((calendar.get(Calendar.MONTH) + 1) << 5)
+                    | calendar.get(Calendar.DATE);
+            this.dosTime = (calendar.get(Calendar.HOUR_OF_DAY) << 11)
+                    | (calendar.get(Calendar.MINUTE) << 5)
+                    | (calendar.get(Calendar.SECOND) >> 1);
+        }
+    }
+    /**
+     * Record of an existing entry, header fields are taken as they are
+     * */
+    ZipEntryRecord(byte[] name, int method, int flags, int dosTime, int dosDate){
+        this.name = name;
+        this.method = method;
+        this.flags = flags;
+        this.dosTime = dosTime;
+        this.dosDate = dosDate;
+    }
+    int getMethod(){
+        return method;
+    }
+    boolean hasDataDescriptor(){
+        return (flags & FLAG_DATA_DESCRIPTOR) != 0;
+    }
+    void setSizes(long crc, long compressedSize, long size){
+        this.crc = crc;
+        this.compressedSize = compressedSize;
+        this.size = size;
+    }
+    long getCrc(){
+        return crc;
+    }
+    long getSize(){
+        return size;
+    }
+    long getCompressedSize(){
+        return compressedSize;
+    }
+    long getLocalOffset(){
+        return localOffset;
+    }
+    void setLocalOffset(long localOffset){
+        this.localOffset = localOffset;
+    }
+    /**
+     * Sets alignment of data start for STORED entry, applied by padding the
+     * local header extra field. Zero or one means no alignment
+     * */
+    void setAlignment(int alignment){
+        this.alignment = alignment;
+    }
+    private int getAlignmentPadding(int extraLength){
+        int alignment = this.alignment;
+        if(alignment <= 1 || method != ZipEntry.STORED){
+            return -1;
+        }
+        long dataStart = localOffset + LOCAL_HEADER_LENGTH + name.length + extraLength
+                + ALIGNMENT_EXTRA_LENGTH;
+        return (int) ((alignment - (dataStart % alignment)) % alignment);
+    }
+    /**
+     * Returns true if the written data of this record satisfies the given alignment,
+     * thus a duplicate requiring the alignment can point to it
+     * */
+    boolean isDataAligned(int alignment){
+        if(alignment <= 1 || method != ZipEntry.STORED){
+            return true;
+        }
+        return dataOffset >= 0 && (dataOffset % alignment) == 0;
+    }
+
+    /**
+     * Record with another name pointing to the same local data of this entry
+     * */
+    ZipEntryRecord duplicate(String name){
+        ZipEntryRecord record = new ZipEntryRecord(name.getBytes(StandardCharsets.UTF_8),
+                method, flags, dosTime, dosDate);
+        record.setSizes(crc, compressedSize, size);
+        record.setLocalOffset(localOffset);
+        record.dataOffset = dataOffset;
+        return record;
+    }
+    void writeLocalHeader(ZipOutput output) throws IOException {
+        this.localOffset = output.getPosition();
+        boolean zip64 = !hasDataDescriptor() && hasZip64Sizes();
+        output.writeInt(LOCAL_SIGNATURE);
+        output.writeShort(zip64 ? VERSION_ZIP64 : VERSION);
+        output.writeShort(flags);
+        output.writeShort(method);
+        output.writeShort(dosTime);
+        output.writeShort(dosDate);
+        if(hasDataDescriptor()){
+            output.writeInt(0);
+            output.writeInt(0);
+            output.writeInt(0);
+        }else if(zip64){
+            output.writeInt(crc);
+            output.writeInt(ZIP64_MAGIC);
+            output.writeInt(ZIP64_MAGIC);
+        }else {
+            output.writeInt(crc);
+            output.writeInt(compressedSize);
+            output.writeInt(size);
+        }
+        int extraLength = zip64 ? ZIP64_LOCAL_EXTRA_LENGTH : 0;
+        int padding = getAlignmentPadding(extraLength);
+        if(padding >= 0){
+            extraLength += ALIGNMENT_EXTRA_LENGTH + padding;
+        }
+        output.writeShort(name.length);
+        output.writeShort(extraLength);
+        output.write(name);
+        if(zip64){
+            output.writeShort(ZIP64_EXTRA_ID);
+            output.writeShort(16);
+            output.writeLong(size);
+            output.writeLong(compressedSize);
+        }
+        if(padding >= 0){
+            output.writeShort(ALIGNMENT_EXTRA_ID);
+            output.writeShort(2 + padding);
+            output.writeShort(alignment);
+            for(int i = 0; i < padding; i++){
+                output.write(0);
+            }
+        }
+        this.dataOffset = output.getPosition();
+    }
+    /**
+     * Returns true if sizes do not fit in zip32 fields
+     * */
+    boolean hasZip64Sizes(){
+        return isZip64(compressedSize) || isZip64(size);
+    }
+    /**
+     * Rewrites crc and sizes of already written local header, the sizes must fit zip32
+     * (the header has no room for zip64 extra)
+     * */
+    void patchLocalHeader(ZipOutput output) throws IOException {
+        if(hasZip64Sizes()){
+            throw new IOException("Can not patch zip64 sizes: " + this);
+        }
+        byte[] bytes = new byte[12];
+        putInt(bytes, 0, crc);
+        putInt(bytes, 4, compressedSize);
+        putInt(bytes, 8, size);
+        output.patch(localOffset + 14, bytes);
+    }
+    void writeDataDescriptor(ZipOutput output) throws IOException {
+        if(!hasDataDescriptor()){
+            return;
+        }
+        output.writeInt(DATA_DESCRIPTOR_SIGNATURE);
+        output.writeInt(crc);
+        if(hasZip64Sizes()){
+            // Same as ZipOutputStream, 8 bytes sizes
+            output.writeLong(compressedSize);
+            output.writeLong(size);
+        }else {
+            output.writeInt(compressedSize);
+            output.writeInt(size);
+        }
+    }
+    void writeCentralHeader(ZipOutput output) throws IOException {
+        boolean zip64Size = isZip64(size);
+        boolean zip64CompressedSize = isZip64(compressedSize);
+        boolean zip64Offset = isZip64(localOffset);
+        int zip64Length = 0;
+        if(zip64Size){
+            zip64Length += 8;
+        }
+        if(zip64CompressedSize){
+            zip64Length += 8;
+        }
+        if(zip64Offset){
+            zip64Length += 8;
+        }
+        int version = zip64Length != 0 ? VERSION_ZIP64 : VERSION;
+        output.writeInt(CENTRAL_SIGNATURE);
+        output.writeShort(version);
+        output.writeShort(version);
+        output.writeShort(flags);
+        output.writeShort(method);
+        output.writeShort(dosTime);
+        output.writeShort(dosDate);
+        output.writeInt(crc);
+        output.writeInt(zip64CompressedSize ? ZIP64_MAGIC : compressedSize);
+        output.writeInt(zip64Size ? ZIP64_MAGIC : size);
+        output.writeShort(name.length);
+        output.writeShort(zip64Length != 0 ? 4 + zip64Length : 0); // extra length
+        output.writeShort(0); // comment length
+        output.writeShort(0); // disk number
+        output.writeShort(0); // internal attributes
+        output.writeInt(0); // external attributes
+        output.writeInt(zip64Offset ? ZIP64_MAGIC : localOffset);
+        output.write(name);
+        if(zip64Length != 0){
+            // only fields marked 0xffffffff, in this order
+            output.writeShort(ZIP64_EXTRA_ID);
+            output.writeShort(zip64Length);
+            if(zip64Size){
+                output.writeLong(size);
+            }
+            if(zip64CompressedSize){
+                output.writeLong(compressedSize);
+            }
+            if(zip64Offset){
+                output.writeLong(localOffset);
+            }
+        }
+    }
+    @Override
+    public String toString(){
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes zip64 end record and locator first if any of the values does not fit zip32
+     * */
+    static void writeEndRecord(ZipOutput output, int count, long centralOffset) throws IOException {
+        long endOffset = output.getPosition();
+        long centralSize = endOffset - centralOffset;
+        if(count >= 0xffff || isZip64(centralSize) || isZip64(centralOffset)){
+            output.writeInt(ZIP64_END_SIGNATURE);
+            output.writeLong(ZIP64_END_RECORD_LENGTH - 12);
+            output.writeShort(VERSION_ZIP64);
+            output.writeShort(VERSION_ZIP64);
+            output.writeInt(0); // disk number
+            output.writeInt(0); // disk of central directory
+            output.writeLong(count);
+            output.writeLong(count);
+            output.writeLong(centralSize);
+            output.writeLong(centralOffset);
+            output.writeInt(ZIP64_LOCATOR_SIGNATURE);
+            output.writeInt(0); // disk of zip64 end record
+            output.writeLong(endOffset);
+            output.writeInt(1); // total disks
+        }
+        output.writeInt(END_SIGNATURE);
+        output.writeShort(0);
+        output.writeShort(0);
+        output.writeShort(Math.min(count, 0xffff));
+        output.writeShort(Math.min(count, 0xffff));
+        output.writeInt(Math.min(centralSize, ZIP64_MAGIC));
+        output.writeInt(Math.min(centralOffset, ZIP64_MAGIC));
+        output.writeShort(0);
+    }
+    private static void putInt(byte[] bytes, int offset, long value){
+        bytes[offset] = (byte) (value & 0xff);
+        bytes[offset + 1] = (byte) ((value >>> 8) & 0xff);
+        bytes[offset + 2] = (byte) ((value >>> 16) & 0xff);
+        bytes[offset + 3] = (byte) ((value >>> 24) & 0xff);
+    }
+    // 0xffffffff itself is zip64 marker
+    private static boolean isZip64(long value){
+        return value >= ZIP64_MAGIC;
+    }
+
+    static final int LOCAL_SIGNATURE = 0x04034b50;
+    static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+    static final int CENTRAL_SIGNATURE = 0x02014b50;
+    static final int END_SIGNATURE = 0x06054b50;
+    static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    static final int LOCAL_HEADER_LENGTH = 30;
+
+    // Same extra field as used by apksigner: id, size, alignment then zero padding
+    private static final int ALIGNMENT_EXTRA_ID = 0xd935;
+    private static final int ALIGNMENT_EXTRA_LENGTH = 6;
+
+    private static final long ZIP64_MAGIC = 0xffffffffL;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final int ZIP64_LOCAL_EXTRA_LENGTH = 20;
+    private static final int ZIP64_END_RECORD_LENGTH = 56;
+
+    private static final int VERSION = 20;
+    private static final int VERSION_ZIP64 = 45;
+    private static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+    private static final int FLAG_UTF8 = 0x0800;
+}
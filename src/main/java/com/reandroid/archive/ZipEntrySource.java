@@ -17,18 +17,71 @@ package com.reandroid.archive;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
-public class ZipEntrySource extends InputSource {
+public class ZipEntrySource extends InputSource implements RawCopySource {
     private final ZipFile zipFile;
     private final ZipEntry zipEntry;
-    public ZipEntrySource(ZipFile zipFile, ZipEntry zipEntry){
+    private final ZipReader zipReader;
+    ZipEntrySource(ZipFile zipFile, ZipEntry zipEntry, ZipReader zipReader){
         super(zipEntry.getName());
         this.zipFile=zipFile;
         this.zipEntry=zipEntry;
+        this.zipReader=zipReader;
         super.setMethod(zipEntry.getMethod());
     }
+    public ZipEntrySource(ZipFile zipFile, ZipEntry zipEntry){
+        this(zipFile, zipEntry, null);
+    }
+    public ZipEntry getZipEntry(){
+        return zipEntry;
+    }
+    @Override
+    public long getLength() throws IOException{
+        long size=zipEntry.getSize();
+        if(size>=0){
+            return size;
+        }
+        return super.getLength();
+    }
+    @Override
+    public long getCrc() throws IOException{
+        long crc=zipEntry.getCrc();
+        if(crc>=0){
+            return crc;
+        }
+        return super.getCrc();
+    }
+    @Override
+    public boolean isRawCopyable(){
+        return zipReader!=null
+                && getMethod()==zipEntry.getMethod()
+                && zipEntry.getCompressedSize()>=0
+                && zipEntry.getSize()>=0
+                && zipEntry.getCrc()>=0;
+    }
+    @Override
+    public long getRawCrc(){
+        return zipEntry.getCrc();
+    }
+    @Override
+    public long getRawSize(){
+        return zipEntry.getSize();
+    }
+    @Override
+    public long getCompressedSize(){
+        return zipEntry.getCompressedSize();
+    }
+    @Override
+    public long writeRaw(OutputStream outputStream) throws IOException{
+        int index=zipReader.indexOf(zipEntry.getName());
+        if(index<0){
+            throw new IOException("Entry not found: "+zipEntry.getName()+", on "+zipReader);
+        }
+        return zipReader.copyRaw(index, outputStream);
+    }
     @Override
     public InputStream openStream() throws IOException {
         return zipFile.getInputStream(zipEntry);
@@ -0,0 +1,293 @@
+ /*
+  *  Copyright (C) 2022 github.com/REAndroid
+  *
+  *  Licensed under the Apache License, Version 2.0 (the "License");
+  *  you may not use this file except in compliance with the License.
+  *  You may obtain a copy of the License at
+  *
+  *      http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package com.reandroid.archive;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Extracts input sources to a directory, sequentially or concurrently on the given executor.
+ * All directories are created before any file is written, and file contents are written through
+ * reusable large buffers. Progress is reported on the calling thread in the order of source list.
+ * Entries writing to the same file (duplicate names, or names differing only in case which
+ * collide on case-insensitive file systems) are extracted on the calling thread in list order,
+ * thus the last one wins same as sequential mode.
+ * */
+public class ZipExtractor {
+    private final List<InputSource> mSourceList;
+    private ExtractProgress extractProgress;
+    private ExecutorService executorService;
+    private boolean disposeInputSource;
+    public ZipExtractor(List<InputSource> sourceList){
+        this.mSourceList=sourceList;
+    }
+    public void setExtractProgress(ExtractProgress extractProgress){
+        this.extractProgress=extractProgress;
+    }
+    /**
+     * When set, files are extracted concurrently on the given executor. At most
+     * {@link #MAX_PENDING_FILES} files are queued at a time.
+     * The executor is not shutdown by this class.
+     * */
+    public void setExecutorService(ExecutorService executorService){
+        this.executorService=executorService;
+    }
+    /**
+     * Whether to call {@link InputSource#disposeInputSource()} after each file is extracted
+     * */
+    public void setDisposeInputSource(boolean disposeInputSource){
+        this.disposeInputSource=disposeInputSource;
+    }
+    public long extract(File outDir) throws IOException{
+        List<InputSource> sourceList=mSourceList;
+        List<File> fileList=new ArrayList<>(sourceList.size());
+        for(InputSource inputSource:sourceList){
+            fileList.add(toOutFile(outDir, inputSource.getAlias()));
+        }
+        createDirectories(fileList);
+        if(executorService!=null){
+            return extractParallel(sourceList, fileList);
+        }
+        return extractSequential(sourceList, fileList);
+    }
+    private long extractSequential(List<InputSource> sourceList, List<File> fileList) throws IOException{
+        long length=0;
+        ExtractBuffer buffer=new ExtractBuffer();
+        int size=sourceList.size();
+        for(int i=0;i<size;i++){
+            InputSource inputSource=sourceList.get(i);
+            length+=extract(inputSource, fileList.get(i), buffer);
+            onFileExtracted(inputSource, length);
+        }
+        return length;
+    }
+    private long extractParallel(List<InputSource> sourceList, List<File> fileList) throws IOException{
+        long length=0;
+        boolean[] collisions=findCollisions(fileList);
+        ExtractBuffer callerBuffer=null;
+        Deque<Future<Long>> pending=new ArrayDeque<>();
+        Queue<ExtractBuffer> bufferPool=new ConcurrentLinkedQueue<>();
+        AtomicBoolean aborted=new AtomicBoolean();
+        int size=sourceList.size();
+        int submitted=0;
+        int done=0;
+        try{
+            while (done<size){
+                while (pending.size()<MAX_PENDING_FILES && submitted<size){
+                    if(!collisions[submitted]){
+                        pending.add(executorService.submit(new ExtractTask(
+                                sourceList.get(submitted), fileList.get(submitted), bufferPool, aborted)));
+                    }
+                    submitted++;
+                }
+                InputSource inputSource=sourceList.get(done);
+                if(collisions[done]){
+                    if(callerBuffer==null){
+                        callerBuffer=new ExtractBuffer();
+                    }
+                    length+=extract(inputSource, fileList.get(done), callerBuffer);
+                }else {
+                    length+=awaitResult(pending.poll());
+                }
+                onFileExtracted(inputSource, length);
+                done++;
+            }
+        }finally {
+            // On failure, running tasks still write files and hold pooled buffers
+            aborted.set(true);
+            awaitDone(pending);
+        }
+        return length;
+    }
+    /**
+     * Marks entries whose output file is shared with another entry, compared ignoring case
+     * */
+    private static boolean[] findCollisions(List<File> fileList){
+        int size=fileList.size();
+        boolean[] results=new boolean[size];
+        Map<String, Integer> firstIndexes=new HashMap<>(size);
+        for(int i=0;i<size;i++){
+            String key=fileList.get(i).getPath().toLowerCase(Locale.ROOT);
+            Integer first=firstIndexes.put(key, i);
+            if(first!=null){
+                results[first]=true;
+                results[i]=true;
+            }
+        }
+        return results;
+    }
+    private void onFileExtracted(InputSource inputSource, long length){
+        ExtractProgress progress=extractProgress;
+        if(progress!=null){
+            progress.onExtractFile(inputSource.getAlias(), length);
+        }
+        if(disposeInputSource){
+            inputSource.disposeInputSource();
+        }
+    }
+    private static void createDirectories(List<File> fileList) throws IOException{
+        Set<File> dirSet=new HashSet<>();
+        for(File file:fileList){
+            File dir=file.getParentFile();
+            if(dir!=null){
+                dirSet.add(dir);
+            }
+        }
+        for(File dir:dirSet){
+            if(!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()){
+                throw new IOException("Failed to create directory: "+dir);
+            }
+        }
+    }
+    private static long extract(InputSource inputSource, File file, ExtractBuffer buffer) throws IOException{
+        FileOutputStream outputStream=new FileOutputStream(file);
+        try{
+            buffer.setOutputStream(outputStream);
+            long length=inputSource.write(buffer);
+            buffer.flush();
+            return length;
+        }finally {
+            buffer.setOutputStream(null);
+            outputStream.close();
+        }
+    }
+    private static File toOutFile(File outDir, String path){
+        path=path.replace('/', File.separatorChar);
+        return new File(outDir, path);
+    }
+    private static long awaitResult(Future<Long> future) throws IOException{
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(ex.getMessage());
+        } catch (ExecutionException ex) {
+            Throwable cause=ex.getCause();
+            if(cause instanceof IOException){
+                throw (IOException) cause;
+            }
+            if(cause instanceof RuntimeException){
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+    private static void awaitDone(Collection<Future<Long>> futures){
+        boolean interrupted=false;
+        for(Future<Long> future:futures){
+            while (true){
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted=true;
+                } catch (ExecutionException ignored) {
+                    break;
+                } catch (CancellationException ignored) {
+                    break;
+                }
+            }
+        }
+        if(interrupted){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class ExtractTask implements Callable<Long> {
+        private final InputSource inputSource;
+        private final File file;
+        private final Queue<ExtractBuffer> bufferPool;
+        private final AtomicBoolean aborted;
+        ExtractTask(InputSource inputSource, File file, Queue<ExtractBuffer> bufferPool, AtomicBoolean aborted){
+            this.inputSource=inputSource;
+            this.file=file;
+            this.bufferPool=bufferPool;
+            this.aborted=aborted;
+        }
+        @Override
+        public Long call() throws IOException {
+            if(aborted.get()){
+                return 0L;
+            }
+            ExtractBuffer buffer=bufferPool.poll();
+            if(buffer==null){
+                buffer=new ExtractBuffer();
+            }
+            try{
+                return extract(inputSource, file, buffer);
+            }finally {
+                bufferPool.offer(buffer);
+            }
+        }
+    }
+    /**
+     * Reusable buffered output, the underlying stream is replaced for each file
+     * */
+    private static class ExtractBuffer extends OutputStream {
+        private final byte[] buffer;
+        private int count;
+        private OutputStream outputStream;
+        ExtractBuffer(){
+            this.buffer=new byte[BUFFER_SIZE];
+        }
+        void setOutputStream(OutputStream outputStream){
+            this.outputStream=outputStream;
+            this.count=0;
+        }
+        @Override
+        public void write(int b) throws IOException {
+            if(count==buffer.length){
+                flush();
+            }
+            buffer[count++]=(byte) b;
+        }
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if(length>=buffer.length){
+                flush();
+                outputStream.write(bytes, offset, length);
+                return;
+            }
+            if(length>buffer.length-count){
+                flush();
+            }
+            System.arraycopy(bytes, offset, buffer, count, length);
+            count+=length;
+        }
+        @Override
+        public void flush() throws IOException {
+            if(count>0){
+                outputStream.write(buffer, 0, count);
+                count=0;
+            }
+        }
+        @Override
+        public void close() throws IOException {
+            // owner closes the file
+            flush();
+        }
+    }
+
+    public static final int MAX_PENDING_FILES = 64;
+    private static final int BUFFER_SIZE = 1024 * 256;
+}
@@ -0,0 +1,160 @@
+ /*
+  *  Copyright (C) 2022 github.com/REAndroid
+  *
+  *  Licensed under the Apache License, Version 2.0 (the "License");
+  *  you may not use this file except in compliance with the License.
+  *  You may obtain a copy of the License at
+  *
+  *      http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package com.reandroid.archive;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Buffered little-endian output that keeps track of the absolute write position.
+ * When backed by FileChannel, already written bytes can be patched (e.g local header crc/sizes)
+ * */
+class ZipOutput extends OutputStream {
+    private final OutputStream outputStream;
+    private final FileChannel fileChannel;
+    private final byte[] buffer;
+    private int count;
+    private long flushedPosition;
+    ZipOutput(OutputStream outputStream){
+        this.outputStream = outputStream;
+        this.fileChannel = null;
+        this.buffer = new byte[BUFFER_SIZE];
+    }
+    ZipOutput(FileChannel fileChannel) throws IOException {
+        this.outputStream = null;
+        this.fileChannel = fileChannel;
+        this.buffer = new byte[BUFFER_SIZE];
+        this.flushedPosition = fileChannel.position();
+    }
+    long getPosition(){
+        return flushedPosition + count;
+    }
+    boolean isSeekable(){
+        return fileChannel != null;
+    }
+    /**
+     * Overwrites bytes at the given absolute position, only supported when {@link #isSeekable()}
+     * */
+    void patch(long position, byte[] bytes) throws IOException {
+        int length = bytes.length;
+        if(position + length > getPosition()){
+            throw new IOException("Can not patch beyond written position: " + position);
+        }
+        if(position >= flushedPosition){
+            System.arraycopy(bytes, 0, buffer, (int) (position - flushedPosition), length);
+            return;
+        }
+        if(fileChannel == null){
+            throw new IOException("Can not patch non seekable output");
+        }
+        flushBuffer();
+        ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
+        while (byteBuffer.hasRemaining()){
+            position += fileChannel.write(byteBuffer, position);
+        }
+    }
+    /**
+     * Drops bytes written after the given absolute position, only supported when {@link #isSeekable()}
+     * */
+    void rewind(long position) throws IOException {
+        if(position > getPosition()){
+            throw new IOException("Can not rewind beyond written position: " + position);
+        }
+        if(position >= flushedPosition){
+            count = (int) (position - flushedPosition);
+            return;
+        }
+        if(fileChannel == null){
+            throw new IOException("Can not rewind non seekable output");
+        }
+        count = 0;
+        fileChannel.truncate(position);
+        fileChannel.position(position);
+        flushedPosition = position;
+    }
+    void writeShort(int value) throws IOException {
+        write(value & 0xff);
+        write((value >>> 8) & 0xff);
+    }
+    void writeInt(long value) throws IOException {
+        write((int) (value & 0xff));
+        write((int) ((value >>> 8) & 0xff));
+        write((int) ((value >>> 16) & 0xff));
+        write((int) ((value >>> 24) & 0xff));
+    }
+    void writeLong(long value) throws IOException {
+        writeInt(value);
+        writeInt(value >>> 32);
+    }
+    @Override
+    public void write(int b) throws IOException {
+        if(count == buffer.length){
+            flushBuffer();
+        }
+        buffer[count++] = (byte) b;
+    }
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if(length >= buffer.length){
+            flushBuffer();
+            writeToSink(bytes, offset, length);
+            return;
+        }
+        if(length > buffer.length - count){
+            flushBuffer();
+        }
+        System.arraycopy(bytes, offset, buffer, count, length);
+        count += length;
+    }
+    private void flushBuffer() throws IOException {
+        if(count == 0){
+            return;
+        }
+        writeToSink(buffer, 0, count);
+        count = 0;
+    }
+    private void writeToSink(byte[] bytes, int offset, int length) throws IOException {
+        if(fileChannel != null){
+            ByteBuffer byteBuffer = ByteBuffer.wrap(bytes, offset, length);
+            while (byteBuffer.hasRemaining()){
+                fileChannel.write(byteBuffer);
+            }
+        }else {
+            outputStream.write(bytes, offset, length);
+        }
+        flushedPosition += length;
+    }
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        if(outputStream != null){
+            outputStream.flush();
+        }
+    }
+    @Override
+    public void close() throws IOException {
+        flush();
+        if(outputStream != null){
+            outputStream.close();
+        }else {
+            fileChannel.close();
+        }
+    }
+
+    private static final int BUFFER_SIZE = 1024 * 64;
+}
@@ -0,0 +1,513 @@
+ /*
+  *  Copyright (C) 2022 github.com/REAndroid
+  *
+  *  Licensed under the Apache License, Version 2.0 (the "License");
+  *  you may not use this file except in compliance with the License.
+  *  You may obtain a copy of the License at
+  *
+  *      http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package com.reandroid.archive;
+
+import com.reandroid.arsc.io.ByteBufferUtil;
+
+import java.io.*;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Reads zip file from a single read-only mapping: the central directory is copied and scanned once
+ * into primitive arrays and entries are read directly from the mapped bytes.
+ * Unlike {@link java.util.zip.ZipFile}, entries with malformed or duplicate names are listed as they are.
+ * Zip64 archives and files too large to map are rejected with {@link ZipException}, for these
+ * {@link java.util.zip.ZipFile} can be used instead.
+ * After {@link #close()} no more streams can be opened, the mapping is released as soon as
+ * all streams opened before are closed (streams never closed leave it to GC).
+ * */
+public class ZipReader implements Closeable {
+    private final File file;
+    private ByteBuffer mBuffer;
+    private int mUseCount;
+    private boolean mClosed;
+    private ByteBuffer mDirectory;
+    private int mCount;
+    private int[] mLocalOffsets;
+    private int[] mCompressedSizes;
+    private int[] mSizes;
+    private int[] mCrcs;
+    private short[] mMethods;
+    private int[] mNameOffsets;
+    private short[] mNameLengths;
+    private int[] mNameHashes;
+    private int[] mHashTable;
+    public ZipReader(File file) throws IOException {
+        this.file = file;
+        this.mBuffer = mapFile(file);
+        boolean loaded = false;
+        try{
+            readCentralDirectory();
+            loaded = true;
+        }finally {
+            if(!loaded){
+                close();
+            }
+        }
+    }
+    public File getFile(){
+        return file;
+    }
+    public int size(){
+        return mCount;
+    }
+    public String getName(int index){
+        return new String(getNameBytes(index), StandardCharsets.UTF_8);
+    }
+    public int getMethod(int index){
+        return mMethods[index] & 0xffff;
+    }
+    public long getCrc(int index){
+        return mCrcs[index] & 0xffffffffL;
+    }
+    public long getSize(int index){
+        return mSizes[index] & 0xffffffffL;
+    }
+    public long getCompressedSize(int index){
+        return mCompressedSizes[index] & 0xffffffffL;
+    }
+    public long getLocalOffset(int index){
+        return mLocalOffsets[index] & 0xffffffffL;
+    }
+    public boolean isDirectory(int index){
+        int length = mNameLengths[index] & 0xffff;
+        return length > 0 && mDirectory.get(mNameOffsets[index] + length - 1) == '/';
+    }
+    /**
+     * Returns index of the last entry with the given name, or -1 if not found
+     * */
+    public int indexOf(String name){
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int hash = hashName(nameBytes);
+        int[] table = getHashTable();
+        int mask = table.length - 1;
+        int result = -1;
+        int slot = hash & mask;
+        int value;
+        while ((value = table[slot]) != 0){
+            int index = value - 1;
+            if(mNameHashes[index] == hash && Arrays.equals(nameBytes, getNameBytes(index))){
+                if(index > result){
+                    result = index;
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+        return result;
+    }
+    public ZipReaderSource getInputSource(String name){
+        int index = indexOf(name);
+        if(index < 0){
+            return null;
+        }
+        return new ZipReaderSource(this, index);
+    }
+    /**
+     * Lists all file entries (directories excluded) on central directory order
+     * */
+    public List<ZipReaderSource> listInputSources(){
+        int count = size();
+        List<ZipReaderSource> results = new ArrayList<>(count);
+        for(int i = 0; i < count; i++){
+            if(isDirectory(i)){
+                continue;
+            }
+            results.add(new ZipReaderSource(this, i));
+        }
+        return results;
+    }
+    public InputStream openStream(int index) throws IOException {
+        int method = getMethod(index);
+        if(method != ZipEntry.STORED && method != ZipEntry.DEFLATED){
+            throw new IOException("Unsupported compression method " + method + ": " + getName(index));
+        }
+        InputStream rawStream = openRawStream(index);
+        if(method == ZipEntry.STORED){
+            return rawStream;
+        }
+        return new EntryInflaterInputStream(rawStream);
+    }
+    /**
+     * The mapping is held until the returned stream is closed
+     * */
+    public InputStream openRawStream(int index) throws IOException {
+        ByteBuffer buffer = acquireBuffer();
+        boolean opened = false;
+        try{
+            InputStream inputStream = new BufferInputStream(this, buffer,
+                    getDataOffset(buffer, index), (int) getCompressedSize(index));
+            opened = true;
+            return inputStream;
+        }finally {
+            if(!opened){
+                releaseBuffer();
+            }
+        }
+    }
+    public long copyRaw(int index, OutputStream outputStream) throws IOException {
+        ByteBuffer buffer = acquireBuffer();
+        try{
+            int length = (int) getCompressedSize(index);
+            int dataOffset = getDataOffset(buffer, index);
+            buffer = buffer.duplicate();
+            setBufferPosition(buffer, dataOffset);
+            byte[] bytes = new byte[Math.min(length, COPY_BUFFER_SIZE)];
+            int remain = length;
+            while (remain > 0){
+                int len = Math.min(remain, bytes.length);
+                buffer.get(bytes, 0, len);
+                outputStream.write(bytes, 0, len);
+                remain -= len;
+            }
+            return length;
+        }finally {
+            releaseBuffer();
+        }
+    }
+    private int getDataOffset(ByteBuffer buffer, int index) throws IOException {
+        int offset = mLocalOffsets[index];
+        if(offset < 0 || offset + ZipEntryRecord.LOCAL_HEADER_LENGTH > buffer.limit()
+                || buffer.getInt(offset) != ZipEntryRecord.LOCAL_SIGNATURE){
+            throw new IOException("Invalid local header: " + getName(index) + ", on " + file);
+        }
+        int nameLength = buffer.getShort(offset + 26) & 0xffff;
+        int extraLength = buffer.getShort(offset + 28) & 0xffff;
+        int dataOffset = offset + ZipEntryRecord.LOCAL_HEADER_LENGTH + nameLength + extraLength;
+        if(dataOffset + getCompressedSize(index) > buffer.limit()){
+            throw new IOException("Entry data out of bounds: " + getName(index) + ", on " + file);
+        }
+        return dataOffset;
+    }
+    /**
+     * Central directory record of the existing entry, pointing to the same local data
+     * */
+    ZipEntryRecord createRecord(int index) throws IOException {
+        int flags;
+        int dosTime;
+        int dosDate;
+        ByteBuffer buffer = acquireBuffer();
+        try{
+            getDataOffset(buffer, index);
+            int offset = mLocalOffsets[index];
+            flags = buffer.getShort(offset + 6) & 0xffff;
+            dosTime = buffer.getShort(offset + 10) & 0xffff;
+            dosDate = buffer.getShort(offset + 12) & 0xffff;
+        }finally {
+            releaseBuffer();
+        }
+        ZipEntryRecord record = new ZipEntryRecord(getNameBytes(index), getMethod(index),
+                flags, dosTime, dosDate);
+        record.setSizes(getCrc(index), getCompressedSize(index), getSize(index));
+        record.setLocalOffset(getLocalOffset(index));
+        return record;
+    }
+    private byte[] getNameBytes(int index){
+        byte[] bytes = new byte[mNameLengths[index] & 0xffff];
+        ByteBuffer buffer = mDirectory.duplicate();
+        setBufferPosition(buffer, mNameOffsets[index]);
+        buffer.get(bytes);
+        return bytes;
+    }
+    private int[] getHashTable(){
+        int[] table = this.mHashTable;
+        if(table != null){
+            return table;
+        }
+        int count = mCount;
+        int length = 16;
+        while (length < count * 2){
+            length = length << 1;
+        }
+        table = new int[length];
+        int mask = length - 1;
+        int[] hashes = mNameHashes;
+        for(int i = 0; i < count; i++){
+            int slot = hashes[i] & mask;
+            while (table[slot] != 0){
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = i + 1;
+        }
+        this.mHashTable = table;
+        return table;
+    }
+    private void readCentralDirectory() throws IOException {
+        ByteBuffer mapped = mBuffer;
+        int end = findEndRecord(mapped);
+        if(end < 0){
+            throw new IOException("End of central directory not found: " + file);
+        }
+        if(isZip64(mapped, end)){
+            throw new ZipException("Zip64 archive is not supported: " + file);
+        }
+        int capacity = mapped.getShort(end + 10) & 0xffff;
+        int start = mapped.getInt(end + 16);
+        if(start < 0 || start > end){
+            throw new IOException("Invalid central directory offset " + start + ": " + file);
+        }
+        // Names are read from heap copy, thus the mapping is needed only for entry data
+        byte[] directory = new byte[end - start];
+        ByteBuffer duplicate = mapped.duplicate();
+        setBufferPosition(duplicate, start);
+        duplicate.get(directory);
+        ByteBuffer buffer = ByteBuffer.wrap(directory).order(ByteOrder.LITTLE_ENDIAN);
+        this.mDirectory = buffer;
+        initArrays(capacity);
+        int limit = directory.length;
+        int position = 0;
+        int count = 0;
+        while (position + CENTRAL_HEADER_LENGTH <= limit
+                && buffer.getInt(position) == ZipEntryRecord.CENTRAL_SIGNATURE){
+            if(count == mLocalOffsets.length){
+                ensureArrays(count * 2 + 16);
+            }
+            int nameLength = buffer.getShort(position + 28) & 0xffff;
+            int extraLength = buffer.getShort(position + 30) & 0xffff;
+            int commentLength = buffer.getShort(position + 32) & 0xffff;
+            mMethods[count] = buffer.getShort(position + 10);
+            mCrcs[count] = buffer.getInt(position + 16);
+            mCompressedSizes[count] = buffer.getInt(position + 20);
+            mSizes[count] = buffer.getInt(position + 24);
+            mLocalOffsets[count] = buffer.getInt(position + 42);
+            int nameOffset = position + CENTRAL_HEADER_LENGTH;
+            mNameOffsets[count] = nameOffset;
+            mNameLengths[count] = (short) nameLength;
+            mNameHashes[count] = hashName(buffer, nameOffset, nameLength);
+            count++;
+            position = nameOffset + nameLength + extraLength + commentLength;
+        }
+        this.mCount = count;
+    }
+    private void initArrays(int capacity){
+        mLocalOffsets = new int[capacity];
+        mCompressedSizes = new int[capacity];
+        mSizes = new int[capacity];
+        mCrcs = new int[capacity];
+        mMethods = new short[capacity];
+        mNameOffsets = new int[capacity];
+        mNameLengths = new short[capacity];
+        mNameHashes = new int[capacity];
+    }
+    private void ensureArrays(int capacity){
+        mLocalOffsets = Arrays.copyOf(mLocalOffsets, capacity);
+        mCompressedSizes = Arrays.copyOf(mCompressedSizes, capacity);
+        mSizes = Arrays.copyOf(mSizes, capacity);
+        mCrcs = Arrays.copyOf(mCrcs, capacity);
+        mMethods = Arrays.copyOf(mMethods, capacity);
+        mNameOffsets = Arrays.copyOf(mNameOffsets, capacity);
+        mNameLengths = Arrays.copyOf(mNameLengths, capacity);
+        mNameHashes = Arrays.copyOf(mNameHashes, capacity);
+    }
+    public synchronized boolean isClosed(){
+        return mClosed;
+    }
+    /**
+     * Unmaps the file once streams in use are closed, thus it can be overwritten or
+     * deleted (e.g on Windows) without waiting for GC
+     * */
+    @Override
+    public synchronized void close(){
+        if(mClosed){
+            return;
+        }
+        mClosed = true;
+        if(mUseCount == 0){
+            unmapBuffer();
+        }
+    }
+    private synchronized ByteBuffer acquireBuffer(){
+        if(mClosed){
+            throw new IllegalStateException("Zip reader is closed: " + file);
+        }
+        mUseCount++;
+        return mBuffer;
+    }
+    private synchronized void releaseBuffer(){
+        mUseCount--;
+        if(mClosed && mUseCount == 0){
+            unmapBuffer();
+        }
+    }
+    private void unmapBuffer(){
+        ByteBuffer buffer = mBuffer;
+        if(buffer != null){
+            mBuffer = null;
+            ByteBufferUtil.unmap(buffer);
+        }
+    }
+    @Override
+    public String toString(){
+        return file + ", entries=" + size();
+    }
+
+    private static int findEndRecord(ByteBuffer buffer){
+        int length = buffer.limit();
+        int min = Math.max(0, length - END_RECORD_LENGTH - 0xffff);
+        for(int i = length - END_RECORD_LENGTH; i >= min; i--){
+            if(buffer.getInt(i) == ZipEntryRecord.END_SIGNATURE){
+                return i;
+            }
+        }
+        return -1;
+    }
+    private static boolean isZip64(ByteBuffer buffer, int end){
+        if(end >= ZIP64_LOCATOR_LENGTH
+                && buffer.getInt(end - ZIP64_LOCATOR_LENGTH) == ZipEntryRecord.ZIP64_LOCATOR_SIGNATURE){
+            return true;
+        }
+        return buffer.getInt(end + 16) == -1;
+    }
+    private static int hashName(ByteBuffer buffer, int offset, int length){
+        int hash = 0;
+        for(int i = 0; i < length; i++){
+            hash = 31 * hash + (buffer.get(offset + i) & 0xff);
+        }
+        return hash;
+    }
+    private static int hashName(byte[] nameBytes){
+        int hash = 0;
+        for(byte b : nameBytes){
+            hash = 31 * hash + (b & 0xff);
+        }
+        return hash;
+    }
+    private static ByteBuffer mapFile(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try{
+            FileChannel fileChannel = randomAccessFile.getChannel();
+            long size = fileChannel.size();
+            if(size > Integer.MAX_VALUE){
+                throw new ZipException("File too large to map: " + size + ", " + file);
+            }
+            ByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return buffer.order(ByteOrder.LITTLE_ENDIAN);
+        }finally {
+            randomAccessFile.close();
+        }
+    }
+    // Buffer#position(int) is covariant on java 9+, call through Buffer to run on java 8
+    private static void setBufferPosition(Buffer buffer, int position){
+        buffer.position(position);
+    }
+
+    /**
+     * Holds one use of the mapping of the reader until closed
+     * */
+    static class BufferInputStream extends InputStream {
+        private final ZipReader zipReader;
+        private final ByteBuffer buffer;
+        private final int end;
+        private int position;
+        private boolean mClosed;
+        BufferInputStream(ZipReader zipReader, ByteBuffer buffer, int start, int length){
+            this.zipReader = zipReader;
+            this.buffer = buffer.duplicate();
+            this.position = start;
+            this.end = start + length;
+        }
+        private void checkOpen() throws IOException {
+            if(mClosed){
+                throw new IOException("Stream is closed");
+            }
+        }
+        @Override
+        public int read() throws IOException {
+            checkOpen();
+            if(position >= end){
+                return -1;
+            }
+            return buffer.get(position++) & 0xff;
+        }
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            checkOpen();
+            int available = end - position;
+            if(available <= 0){
+                return -1;
+            }
+            if(length > available){
+                length = available;
+            }
+            setBufferPosition(buffer, position);
+            buffer.get(bytes, offset, length);
+            position += length;
+            return length;
+        }
+        @Override
+        public long skip(long n) {
+            int skip = (int) Math.max(0, Math.min(n, end - position));
+            position += skip;
+            return skip;
+        }
+        @Override
+        public int available() {
+            return end - position;
+        }
+        @Override
+        public void close() {
+            if(!mClosed){
+                mClosed = true;
+                zipReader.releaseBuffer();
+            }
+        }
+    }
+    static class EntryInflaterInputStream extends InflaterInputStream {
+        private boolean mEofFilled;
+        private boolean mClosed;
+        EntryInflaterInputStream(InputStream inputStream){
+            super(inputStream, new Inflater(true), INFLATE_BUFFER_SIZE);
+        }
+        @Override
+        protected void fill() throws IOException {
+            if(mEofFilled){
+                throw new EOFException("Unexpected end of entry data");
+            }
+            len = in.read(buf, 0, buf.length);
+            if(len < 0){
+                // Raw inflater may need one extra dummy byte to finish
+                buf[0] = 0;
+                len = 1;
+                mEofFilled = true;
+            }
+            inf.setInput(buf, 0, len);
+        }
+        @Override
+        public void close() throws IOException {
+            if(!mClosed){
+                mClosed = true;
+                inf.end();
+                super.close();
+            }
+        }
+    }
+
+    private static final int CENTRAL_HEADER_LENGTH = 46;
+    private static final int END_RECORD_LENGTH = 22;
+    private static final int ZIP64_LOCATOR_LENGTH = 20;
+    private static final int COPY_BUFFER_SIZE = 1024 * 64;
+    private static final int INFLATE_BUFFER_SIZE = 1024 * 8;
+}
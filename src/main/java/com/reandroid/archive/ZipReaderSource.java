@@ -0,0 +1,69 @@
+ /*
+  *  Copyright (C) 2022 github.com/REAndroid
+  *
+  *  Licensed under the Apache License, Version 2.0 (the "License");
+  *  you may not use this file except in compliance with the License.
+  *  You may obtain a copy of the License at
+  *
+  *      http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package com.reandroid.archive;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+public class ZipReaderSource extends InputSource implements RawCopySource {
+    private final ZipReader zipReader;
+    private final int index;
+    public ZipReaderSource(ZipReader zipReader, int index){
+        super(zipReader.getName(index));
+        this.zipReader=zipReader;
+        this.index=index;
+        super.setMethod(zipReader.getMethod(index));
+    }
+    public ZipReader getZipReader(){
+        return zipReader;
+    }
+    public int getIndex(){
+        return index;
+    }
+    @Override
+    public long getLength() throws IOException{
+        return getRawSize();
+    }
+    @Override
+    public long getCrc() throws IOException{
+        return getRawCrc();
+    }
+    @Override
+    public InputStream openStream() throws IOException {
+        return zipReader.openStream(index);
+    }
+    @Override
+    public boolean isRawCopyable(){
+        return getMethod()==zipReader.getMethod(index);
+    }
+    @Override
+    public long getRawCrc(){
+        return zipReader.getCrc(index);
+    }
+    @Override
+    public long getRawSize(){
+        return zipReader.getSize(index);
+    }
+    @Override
+    public long getCompressedSize(){
+        return zipReader.getCompressedSize(index);
+    }
+    @Override
+    public long writeRaw(OutputStream outputStream) throws IOException{
+        return zipReader.copyRaw(index, outputStream);
+    }
+}
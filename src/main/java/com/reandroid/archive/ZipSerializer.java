@@ -16,16 +16,35 @@
 package com.reandroid.archive;
 
 import java.io.*;
-import java.util.List;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.zip.ZipException;
 
 public class ZipSerializer {
     private final List<InputSource> mSourceList;
+    private final long mTime;
     private WriteProgress writeProgress;
     private WriteInterceptor writeInterceptor;
+    private ExecutorService executorService;
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private int alignment;
+    private int nativeLibAlignment;
+    private boolean deduplicate;
+    private Map<String, ZipEntryRecord> contentMap;
+    private long deduplicatedBytes;
     public ZipSerializer(List<InputSource> sourceList){
         this.mSourceList=sourceList;
+        this.mTime=System.currentTimeMillis();
     }
 
     public void setWriteInterceptor(WriteInterceptor writeInterceptor) {
@@ -34,6 +53,41 @@ public class ZipSerializer {
     public void setWriteProgress(WriteProgress writeProgress){
         this.writeProgress=writeProgress;
     }
+    /**
+     * When set, entries are compressed concurrently on the given executor and written
+     * in the same order as sequential mode. The output is identical to sequential mode.
+     * The executor is not shutdown by this class.
+     * */
+    public void setExecutorService(ExecutorService executorService){
+        this.executorService=executorService;
+    }
+    public void setCompressionLevel(int compressionLevel){
+        this.compressionLevel=compressionLevel;
+    }
+    /**
+     * Aligns data of STORED entries while writing, thus no need of zip-aligning afterwards.
+     * @param alignment for all STORED entries e.g {@link #ALIGNMENT_4}
+     * @param nativeLibAlignment for STORED *.so files e.g {@link #ALIGNMENT_PAGE}
+     * */
+    public void setAlignment(int alignment, int nativeLibAlignment){
+        this.alignment=alignment;
+        this.nativeLibAlignment=nativeLibAlignment;
+    }
+    /**
+     * When enabled, entries with identical content are written once and later central directory
+     * records point to the same local data. Costs an additional read pass of each entry.
+     * Some tools (e.g. strict zip validators or stores) reject such archives.
+     * Not applied on {@link #writeIncremental(ZipReader)}
+     * */
+    public void setDeduplicate(boolean deduplicate){
+        this.deduplicate=deduplicate;
+    }
+    /**
+     * Returns sum of compressed sizes of entries not written on last write due to de-duplication
+     * */
+    public long getDeduplicatedBytes(){
+        return deduplicatedBytes;
+    }
     public long writeZip(File outZip) throws IOException{
         File dir=outZip.getParentFile();
         if(dir!=null && !dir.exists()){
@@ -41,8 +95,12 @@ public class ZipSerializer {
         }
         File tmp=toTmpFile(outZip);
         FileOutputStream fileOutputStream=new FileOutputStream(tmp);
-        long length= writeZip(fileOutputStream);
-        fileOutputStream.close();
+        long length;
+        try{
+            length=writeZip(new ZipOutput(fileOutputStream.getChannel()));
+        }finally {
+            fileOutputStream.close();
+        }
         outZip.delete();
         tmp.renameTo(outZip);
         return length;
@@ -53,39 +111,278 @@ public class ZipSerializer {
         return new File(dir, name);
     }
     public long writeZip(OutputStream outputStream) throws IOException{
+        return writeZip(new ZipOutput(outputStream));
+    }
+    /**
+     * Updates the zip file of the given reader in place: entries still read unchanged from
+     * the reader keep their data where it is, all other entries are appended at the end of the file
+     * followed by a new central directory. The old local data and central directory are left
+     * untouched, thus the reader remains valid. If writing fails, the file is truncated back to
+     * its original length. Space of removed or replaced entries is not
+     * reclaimed, call {@link #writeZip(File)} to compact.
+     * Entries are written sequentially even if executor is set.
+     * */
+    public long writeIncremental(ZipReader zipReader) throws IOException{
+        List<ZipEntryRecord> recordList=new ArrayList<>(mSourceList.size());
+        Set<String> nameSet=new HashSet<>();
         long length=0;
-        WriteProgress progress=writeProgress;
-        ZipOutputStream zipOutputStream=new ZipOutputStream(outputStream);
-        for(InputSource inputSource:mSourceList){
-            inputSource = interceptWrite(inputSource);
-            if(inputSource==null){
-                continue;
+        RandomAccessFile file=new RandomAccessFile(zipReader.getFile(), "rw");
+        try{
+            FileChannel fileChannel=file.getChannel();
+            long originalSize=fileChannel.size();
+            fileChannel.position(originalSize);
+            boolean completed=false;
+            try{
+                ZipOutput output=new ZipOutput(fileChannel);
+                Deflater deflater=new Deflater(compressionLevel, true);
+                try{
+                    for(InputSource inputSource:mSourceList){
+                        inputSource = interceptWrite(inputSource);
+                        if(inputSource==null){
+                            continue;
+                        }
+                        checkDuplicateName(nameSet, inputSource);
+                        int index=getUnchangedIndex(zipReader, inputSource);
+                        if(index>=0){
+                            recordList.add(zipReader.createRecord(index));
+                            continue;
+                        }
+                        onCompressFile(inputSource, length);
+                        ZipEntryRecord record=writeEntry(output, new ZipEntryData(inputSource), deflater);
+                        length+=record.getSize();
+                        recordList.add(record);
+                        inputSource.disposeInputSource();
+                    }
+                }finally {
+                    deflater.end();
+                }
+                writeCentralDirectory(output, recordList);
+                completed=true;
+            }finally {
+                if(!completed){
+                    // Drops partially appended entries, the old end record must stay
+                    // within the tail scanned by zip readers
+                    fileChannel.truncate(originalSize);
+                }
             }
-            if(progress!=null){
-                progress.onCompressFile(inputSource.getAlias(), inputSource.getMethod(), length);
+        }finally {
+            file.close();
+        }
+        return length;
+    }
+    private long writeZip(ZipOutput output) throws IOException{
+        List<ZipEntryRecord> recordList=new ArrayList<>(mSourceList.size());
+        this.deduplicatedBytes=0;
+        if(deduplicate){
+            this.contentMap=new HashMap<>();
+        }
+        long length;
+        try{
+            if(executorService!=null){
+                length=writeParallel(output, recordList);
+            }else {
+                length=writeSequential(output, recordList);
             }
-            length+=write(zipOutputStream, inputSource);
-            zipOutputStream.closeEntry();
-            inputSource.disposeInputSource();
+        }finally {
+            this.contentMap=null;
         }
-        zipOutputStream.close();
+        writeCentralDirectory(output, recordList);
         return length;
     }
-    private long write(ZipOutputStream zipOutputStream, InputSource inputSource) throws IOException{
-        ZipEntry zipEntry=createZipEntry(inputSource);
-        zipOutputStream.putNextEntry(zipEntry);
-        return inputSource.write(zipOutputStream);
+    private void writeCentralDirectory(ZipOutput output, List<ZipEntryRecord> recordList) throws IOException{
+        long centralOffset=output.getPosition();
+        for(ZipEntryRecord record:recordList){
+            record.writeCentralHeader(output);
+        }
+        ZipEntryRecord.writeEndRecord(output, recordList.size(), centralOffset);
+        output.close();
+    }
+    private long writeSequential(ZipOutput output, List<ZipEntryRecord> recordList) throws IOException{
+        long length=0;
+        Set<String> nameSet=new HashSet<>();
+        Deflater deflater=new Deflater(compressionLevel, true);
+        try{
+            for(InputSource inputSource:mSourceList){
+                inputSource = interceptWrite(inputSource);
+                if(inputSource==null){
+                    continue;
+                }
+                checkDuplicateName(nameSet, inputSource);
+                onCompressFile(inputSource, length);
+                ZipEntryData entryData=new ZipEntryData(inputSource);
+                ZipEntryRecord record=findDuplicate(entryData);
+                if(record==null){
+                    record=writeEntry(output, entryData, deflater);
+                    addContent(entryData, record);
+                }
+                length+=record.getSize();
+                recordList.add(record);
+                inputSource.disposeInputSource();
+            }
+        }finally {
+            deflater.end();
+        }
+        return length;
+    }
+    private ZipEntryRecord writeEntry(ZipOutput output, ZipEntryData entryData, Deflater deflater) throws IOException{
+        InputSource inputSource=entryData.getInputSource();
+        ZipEntryRecord record=createRecord(entryData);
+        boolean storedEntry=!entryData.isRaw() && record.getMethod()==ZipEntry.STORED;
+        boolean patchHeader=storedEntry && output.isSeekable();
+        if(entryData.isRaw()){
+            record.setSizes(entryData.getCrc(), entryData.getCompressedSize(), entryData.getSize());
+        }else if(storedEntry && !patchHeader){
+            // Non seekable output, crc and size are required before writing data
+            long length=inputSource.getLength();
+            record.setSizes(inputSource.getCrc(), length, length);
+        }
+        record.writeLocalHeader(output);
+        entryData.write(output, deflater);
+        if(patchHeader){
+            record.setSizes(entryData.getCrc(), entryData.getCompressedSize(), entryData.getSize());
+            if(record.hasZip64Sizes()){
+                // Rare, local header needs zip64 extra: written again with the known sizes
+                output.rewind(record.getLocalOffset());
+                record.writeLocalHeader(output);
+                entryData.write(output, deflater);
+                checkStoredEntry(record, entryData);
+            }else {
+                record.patchLocalHeader(output);
+            }
+        }else if(storedEntry){
+            checkStoredEntry(record, entryData);
+        }
+        onEntryWritten(output, record, entryData);
+        return record;
+    }
+    private long writeParallel(ZipOutput output, List<ZipEntryRecord> recordList) throws IOException{
+        long length=0;
+        Deque<Future<ZipEntryData>> pending=new ArrayDeque<>();
+        Queue<Deflater> deflaterPool=new ConcurrentLinkedQueue<>();
+        AtomicBoolean aborted=new AtomicBoolean();
+        Set<String> nameSet=new HashSet<>();
+        Iterator<InputSource> iterator=mSourceList.iterator();
+        try{
+            while (true){
+                while (pending.size()<MAX_PENDING_ENTRIES && iterator.hasNext()){
+                    InputSource inputSource = interceptWrite(iterator.next());
+                    if(inputSource==null){
+                        continue;
+                    }
+                    checkDuplicateName(nameSet, inputSource);
+                    ZipEntryData entryData=new ZipEntryData(inputSource);
+                    if(entryData.isRaw() && !deduplicate){
+                        pending.add(CompletableFuture.completedFuture(entryData));
+                        continue;
+                    }
+                    pending.add(executorService.submit(
+                            new CompressTask(entryData, deflaterPool, compressionLevel, deduplicate, aborted)));
+                }
+                Future<ZipEntryData> future=pending.poll();
+                if(future==null){
+                    break;
+                }
+                ZipEntryData entryData=awaitResult(future);
+                InputSource inputSource=entryData.getInputSource();
+                onCompressFile(inputSource, length);
+                ZipEntryRecord record=findDuplicate(entryData);
+                if(record==null){
+                    record=createRecord(entryData);
+                    record.setSizes(entryData.getCrc(), entryData.getCompressedSize(), entryData.getSize());
+                    record.writeLocalHeader(output);
+                    if(entryData.isRaw()){
+                        entryData.write(output, null);
+                    }else {
+                        entryData.writeBuffer(output);
+                    }
+                    onEntryWritten(output, record, entryData);
+                    addContent(entryData, record);
+                }
+                length+=record.getSize();
+                recordList.add(record);
+                inputSource.disposeInputSource();
+            }
+        }finally {
+            // On failure, running tasks still read sources and use pooled deflaters
+            aborted.set(true);
+            awaitDone(pending);
+            Deflater deflater;
+            while ((deflater=deflaterPool.poll())!=null){
+                deflater.end();
+            }
+        }
+        return length;
+    }
+    // Same as ZipOutputStream#putNextEntry
+    private static void checkDuplicateName(Set<String> nameSet, InputSource inputSource) throws ZipException{
+        String name=inputSource.getAlias();
+        if(!nameSet.add(name)){
+            throw new ZipException("duplicate entry: "+name);
+        }
+    }
+    private void checkStoredEntry(ZipEntryRecord record, ZipEntryData entryData) throws IOException{
+        if(entryData.getCrc()!=record.getCrc() || entryData.getSize()!=record.getSize()){
+            throw new IOException("Invalid STORED entry crc/size: "+entryData);
+        }
+    }
+    private void onEntryWritten(ZipOutput output, ZipEntryRecord record, ZipEntryData entryData) throws IOException{
+        record.setSizes(entryData.getCrc(), entryData.getCompressedSize(), entryData.getSize());
+        record.writeDataDescriptor(output);
+    }
+    private ZipEntryRecord findDuplicate(ZipEntryData entryData) throws IOException{
+        Map<String, ZipEntryRecord> map=this.contentMap;
+        if(map==null){
+            return null;
+        }
+        ZipEntryRecord record=map.get(entryData.getContentKey());
+        if(record==null){
+            return null;
+        }
+        String name=entryData.getInputSource().getAlias();
+        if(!record.isDataAligned(getAlignment(name))){
+            // e.g *.so page alignment, written again and replaces the record of this content
+            return null;
+        }
+        deduplicatedBytes+=record.getCompressedSize();
+        return record.duplicate(name);
     }
-    private ZipEntry createZipEntry(InputSource inputSource) throws IOException {
+    private void addContent(ZipEntryData entryData, ZipEntryRecord record) throws IOException{
+        Map<String, ZipEntryRecord> map=this.contentMap;
+        if(map!=null){
+            map.put(entryData.getContentKey(), record);
+        }
+    }
+    private static int getUnchangedIndex(ZipReader zipReader, InputSource inputSource){
+        if(!(inputSource instanceof ZipReaderSource)){
+            return -1;
+        }
+        ZipReaderSource source=(ZipReaderSource) inputSource;
+        if(source.getZipReader()!=zipReader || !source.isRawCopyable()
+                || !source.getAlias().equals(source.getName())){
+            return -1;
+        }
+        return source.getIndex();
+    }
+    private ZipEntryRecord createRecord(ZipEntryData entryData){
+        InputSource inputSource=entryData.getInputSource();
+        int method=inputSource.getMethod();
+        boolean dataDescriptor=!entryData.isRaw() && method!=ZipEntry.STORED;
         String name=inputSource.getAlias();
-        ZipEntry zipEntry=new ZipEntry(name);
-        int method = inputSource.getMethod();
-        zipEntry.setMethod(method);
-        if(method==ZipEntry.STORED){
-            zipEntry.setCrc(inputSource.getCrc());
-            zipEntry.setSize(inputSource.getLength());
+        ZipEntryRecord record=new ZipEntryRecord(name, method, dataDescriptor, mTime);
+        record.setAlignment(getAlignment(name));
+        return record;
+    }
+    private int getAlignment(String name){
+        if(nativeLibAlignment>0 && name.endsWith(".so")){
+            return nativeLibAlignment;
+        }
+        return alignment;
+    }
+    private void onCompressFile(InputSource inputSource, long length){
+        WriteProgress progress=writeProgress;
+        if(progress!=null){
+            progress.onCompressFile(inputSource.getAlias(), inputSource.getMethod(), length);
         }
-        return zipEntry;
     }
     private InputSource interceptWrite(InputSource inputSource){
         WriteInterceptor interceptor=writeInterceptor;
@@ -94,4 +391,84 @@ public class ZipSerializer {
         }
         return inputSource;
     }
+    private static ZipEntryData awaitResult(Future<ZipEntryData> future) throws IOException{
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(ex.getMessage());
+        } catch (ExecutionException ex) {
+            Throwable cause=ex.getCause();
+            if(cause instanceof IOException){
+                throw (IOException) cause;
+            }
+            if(cause instanceof RuntimeException){
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+    private static void awaitDone(Collection<? extends Future<?>> futures){
+        boolean interrupted=false;
+        for(Future<?> future:futures){
+            while (true){
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted=true;
+                } catch (ExecutionException ignored) {
+                    break;
+                } catch (CancellationException ignored) {
+                    break;
+                }
+            }
+        }
+        if(interrupted){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class CompressTask implements Callable<ZipEntryData> {
+        private final ZipEntryData entryData;
+        private final Queue<Deflater> deflaterPool;
+        private final int compressionLevel;
+        private final boolean contentKey;
+        private final AtomicBoolean aborted;
+        CompressTask(ZipEntryData entryData, Queue<Deflater> deflaterPool, int compressionLevel,
+                     boolean contentKey, AtomicBoolean aborted){
+            this.entryData=entryData;
+            this.deflaterPool=deflaterPool;
+            this.compressionLevel=compressionLevel;
+            this.contentKey=contentKey;
+            this.aborted=aborted;
+        }
+        @Override
+        public ZipEntryData call() throws IOException {
+            if(aborted.get()){
+                return entryData;
+            }
+            if(contentKey){
+                entryData.getContentKey();
+            }
+            if(entryData.isRaw()){
+                return entryData;
+            }
+            Deflater deflater=deflaterPool.poll();
+            if(deflater==null){
+                deflater=new Deflater(compressionLevel, true);
+            }
+            try{
+                entryData.compressToBuffer(deflater);
+                return entryData;
+            }finally {
+                deflaterPool.offer(deflater);
+            }
+        }
+    }
+
+    private static final int MAX_PENDING_ENTRIES = 64;
+
+    public static final int ALIGNMENT_4 = 4;
+    public static final int ALIGNMENT_PAGE = 16384;
 }
@@ -15,7 +15,7 @@
   */
 package com.reandroid.arsc.array;
 
-import com.reandroid.arsc.item.IntegerArray;
+import com.reandroid.arsc.item.EntryOffsetArray;
 import com.reandroid.arsc.item.IntegerItem;
 import com.reandroid.arsc.value.Entry;
 import com.reandroid.json.JSONConvert;
@@ -26,8 +26,12 @@ import java.util.Iterator;
 
 
 public class EntryArray extends OffsetBlockArray<Entry> implements JSONConvert<JSONArray> {
-    public EntryArray(IntegerArray offsets, IntegerItem itemCount, IntegerItem itemStart){
+    private final EntryOffsetArray mEntryOffsets;
+    private final IntegerItem mEntryCount;
+    public EntryArray(EntryOffsetArray offsets, IntegerItem itemCount, IntegerItem itemStart){
         super(offsets, itemCount, itemStart);
+        this.mEntryOffsets = offsets;
+        this.mEntryCount = itemCount;
     }
     public boolean isEmpty(){
         return !iterator(true).hasNext();
@@ -53,6 +57,21 @@ public class EntryArray extends OffsetBlockArray<Entry> implements JSONConvert<J
     public Entry getEntry(short entryId){
         return get(0xffff & entryId);
     }
+    /**
+     * Entries are kept indexed by entry id, on sparse encoding the count is number of present entries
+     * */
+    @Override
+    void refreshCount(){
+        if(mEntryOffsets.isSparse()){
+            mEntryCount.set(countNonNull());
+            return;
+        }
+        super.refreshCount();
+    }
+    @Override
+    void onOffsetsRefreshed(){
+        mEntryOffsets.onOffsetsChanged();
+    }
     @Override
     public Entry newInstance() {
         return new Entry();
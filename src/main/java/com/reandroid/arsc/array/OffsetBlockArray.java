@@ -41,6 +41,7 @@ public abstract class OffsetBlockArray<T extends Block> extends BlockArray<T> im
         this.mItemCount=itemCount;
         this.mItemStart=itemStart;
         this.mEnd4Block=new ByteArray();
+        this.mEnd4Block.setParent(this);
         mItemCount.setBlockLoad(this);
     }
     void setEndBytes(byte b){
@@ -70,16 +71,6 @@ public abstract class OffsetBlockArray<T extends Block> extends BlockArray<T> im
         mEnd4Block.onCountUpTo(counter);
     }
     @Override
-    public byte[] getBytes(){
-        byte[] results=super.getBytes();
-        if(results==null){
-            return null;
-        }
-        byte[] endBytes=mEnd4Block.getBytes();
-        results=addBytes(results, endBytes);
-        return results;
-    }
-    @Override
     public int onWriteBytes(OutputStream stream) throws IOException {
         int result=super.onWriteBytes(stream);
         if(result==0){
@@ -108,10 +99,16 @@ public abstract class OffsetBlockArray<T extends Block> extends BlockArray<T> im
                 mOffsets.put(i, offset);
             }
         }
+        onOffsetsRefreshed();
         refreshCount();
         refreshStart();
         refreshEnd4Block();
     }
+    void onOffsetsRefreshed(){
+    }
+    IntegerArray getOffsetArray(){
+        return mOffsets;
+    }
     public void refreshCountAndStart(){
         refreshCount();
         refreshStart();
@@ -163,15 +160,28 @@ public abstract class OffsetBlockArray<T extends Block> extends BlockArray<T> im
 
     @Override
     public void onReadBytes(BlockReader reader) throws IOException{
+        int[] offsetArray=mOffsets.toArray();
+        if(offsetArray.length!=childesCount()){
+            // encoded offsets (e.g. sparse) expand to different count
+            setChildesCount(offsetArray.length);
+        }
         T[] childes=getChildes();
         if(childes==null||childes.length==0){
             return;
         }
-        int[] offsetArray=mOffsets.toArray();
         int max=childes.length;
         int start=mItemStart.get();
         reader.seek(start);
         int zeroPosition=reader.getPosition();
+        int maxPos=readChildes(reader, childes, offsetArray, zeroPosition);
+        reader.seek(maxPos);
+        refreshEnd4Block(reader, mEnd4Block);
+    }
+    /**
+     * Reads each item at its offset, returns the end position of the furthest item
+     * */
+    int readChildes(BlockReader reader, T[] childes, int[] offsetArray, int zeroPosition) throws IOException{
+        int max=childes.length;
         int maxPos=zeroPosition;
         for(int i=0;i<max;i++){
             T item=childes[i];
@@ -188,8 +198,7 @@ public abstract class OffsetBlockArray<T extends Block> extends BlockArray<T> im
                 maxPos=pos;
             }
         }
-        reader.seek(maxPos);
-        refreshEnd4Block(reader, mEnd4Block);
+        return maxPos;
     }
     @Override
     public void onBlockLoaded(BlockReader reader, Block sender) throws IOException {
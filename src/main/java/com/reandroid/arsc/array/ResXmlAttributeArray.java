@@ -44,9 +44,9 @@ public class ResXmlAttributeArray extends BlockArray<ResXmlAttribute>
         this.mAttributesUnitSize=attributesUnitSize;
     }
     public void setAttributesUnitSize(int size){
-        ResXmlAttribute[] attributes=getChildes();
-        for(int i=0;i<attributes.length;i++){
-            attributes[i].setAttributesUnitSize(size);
+        int max=childesCount();
+        for(int i=0;i<max;i++){
+            get(i).setAttributesUnitSize(size);
         }
         mAttributesUnitSize.set((short) size);
     }
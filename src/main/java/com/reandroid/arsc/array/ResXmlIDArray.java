@@ -69,13 +69,9 @@ public class ResXmlIDArray extends BlockArray<ResXmlID>  {
         }
         mUpdated=true;
         mResIdMap.clear();
-        ResXmlID[] allChildes=getChildes();
-        if(allChildes==null||allChildes.length==0){
-            return;
-        }
-        int max=allChildes.length;
+        int max=childesCount();
         for(int i=0;i<max;i++){
-            ResXmlID xmlID=allChildes[i];
+            ResXmlID xmlID=get(i);
             mResIdMap.put(xmlID.get(), xmlID);
         }
     }
@@ -98,13 +98,9 @@ public class SpecTypePairArray extends BlockArray<SpecTypePair>
         return pair;
     }
     public SpecTypePair getPair(byte typeId){
-        SpecTypePair[] items=getChildes();
-        if(items==null){
-            return null;
-        }
-        int max=items.length;
+        int max=childesCount();
         for(int i=0;i<max;i++){
-            SpecTypePair pair=items[i];
+            SpecTypePair pair=get(i);
             if(pair==null){
                 continue;
             }
@@ -115,13 +111,9 @@ public class SpecTypePairArray extends BlockArray<SpecTypePair>
         return null;
     }
     public byte getTypeId(){
-        SpecTypePair[] items=getChildes();
-        if(items==null){
-            return 0;
-        }
-        int max=items.length;
+        int max=childesCount();
         for(int i=0;i<max;i++){
-            SpecTypePair pair=items[i];
+            SpecTypePair pair=get(i);
             if(pair!=null){
                 return pair.getTypeId();
             }
@@ -159,8 +151,9 @@ public class SpecTypePairArray extends BlockArray<SpecTypePair>
     }
     private Map<Byte, Integer> mapHighestEntryCount(){
         Map<Byte, Integer> results=new HashMap<>();
-        SpecTypePair[] childes=getChildes();
-        for (SpecTypePair pair:childes){
+        int max=childesCount();
+        for (int i=0;i<max;i++){
+            SpecTypePair pair=get(i);
             int count=pair.getHighestEntryCount();
             byte id=pair.getTypeId();
             Integer exist=results.get(id);
@@ -171,14 +164,11 @@ public class SpecTypePairArray extends BlockArray<SpecTypePair>
         return results;
     }
     public int getSmallestTypeId(){
-        SpecTypePair[] childes=getChildes();
-        if(childes==null){
-            return 0;
-        }
+        int max=childesCount();
         int result=0;
         boolean firstFound=false;
-        for (int i=0;i<childes.length;i++){
-            SpecTypePair pair=childes[i];
+        for (int i=0;i<max;i++){
+            SpecTypePair pair=get(i);
             if(pair==null){
                 continue;
             }
@@ -194,13 +184,10 @@ public class SpecTypePairArray extends BlockArray<SpecTypePair>
         return result;
     }
     public int getHighestTypeId(){
-        SpecTypePair[] childes=getChildes();
-        if(childes==null){
-            return 0;
-        }
+        int max=childesCount();
         int result=0;
-        for (int i=0;i<childes.length;i++){
-            SpecTypePair pair=childes[i];
+        for (int i=0;i<max;i++){
+            SpecTypePair pair=get(i);
             if(pair==null){
                 continue;
             }
@@ -260,12 +247,9 @@ public class SpecTypePairArray extends BlockArray<SpecTypePair>
         if(typeName==null){
             return null;
         }
-        SpecTypePair[] childes=getChildes();
-        if(childes==null){
-            return null;
-        }
-        for(int i=0;i<childes.length;i++){
-            SpecTypePair specTypePair=childes[i];
+        int max=childesCount();
+        for(int i=0;i<max;i++){
+            SpecTypePair specTypePair=get(i);
             if(typeName.equals(specTypePair.getTypeName())){
                 return specTypePair;
             }
@@ -35,12 +35,9 @@
          this.count.setBlockLoad(this);
      }
      public boolean contains(StagedAliasEntry aliasEntry){
-         StagedAliasEntry[] childes=getChildes();
-         if(childes==null){
-             return false;
-         }
-         for(int i=0;i<childes.length;i++){
-             StagedAliasEntry entry=childes[i];
+         int max=childesCount();
+         for(int i=0;i<max;i++){
+             StagedAliasEntry entry=get(i);
              if(entry.isEqual(aliasEntry)){
                  return true;
              }
@@ -48,12 +45,9 @@
          return false;
      }
      public StagedAliasEntry searchByStagedResId(int stagedResId){
-         StagedAliasEntry[] childes=getChildes();
-         if(childes==null){
-             return null;
-         }
-         for(int i=0;i<childes.length;i++){
-             StagedAliasEntry entry=childes[i];
+         int max=childesCount();
+         for(int i=0;i<max;i++){
+             StagedAliasEntry entry=get(i);
              if(stagedResId==entry.getStagedResId()){
                  return entry;
              }
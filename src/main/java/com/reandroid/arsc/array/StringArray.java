@@ -15,6 +15,7 @@
   */
 package com.reandroid.arsc.array;
 
+import com.reandroid.arsc.io.BlockReader;
 import com.reandroid.arsc.item.IntegerArray;
 import com.reandroid.arsc.item.IntegerItem;
 import com.reandroid.arsc.item.StringItem;
@@ -22,12 +23,15 @@ import com.reandroid.json.JSONConvert;
 import com.reandroid.json.JSONArray;
 import com.reandroid.json.JSONObject;
 
+import java.io.IOException;
 import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
 
 public abstract class StringArray<T extends StringItem> extends OffsetBlockArray<T> implements JSONConvert<JSONArray> {
     private boolean mUtf8;
+    private boolean mShareDuplicates;
+    private boolean mHasAliases;
 
     public StringArray(IntegerArray offsets, IntegerItem itemCount, IntegerItem itemStart, boolean is_utf8) {
         super(offsets, itemCount, itemStart);
@@ -69,21 +73,94 @@ public abstract class StringArray<T extends StringItem> extends OffsetBlockArray
             return;
         }
         mUtf8=is_utf8;
-        T[] childes=getChildes();
-        if(childes!=null){
-            int max=childes.length;
-            for(int i=0;i<max;i++){
-                childes[i].setUtf8(is_utf8);
-            }
+        int max=childesCount();
+        for(int i=0;i<max;i++){
+            get(i).setUtf8(is_utf8);
         }
     }
     public boolean isUtf8() {
         return mUtf8;
     }
+    /**
+     * When enabled, bytes of equal strings are written once and offsets of the later ones
+     * point to the first, applied on refresh
+     * */
+    public void setShareDuplicates(boolean shareDuplicates){
+        this.mShareDuplicates = shareDuplicates;
+    }
+    public boolean isShareDuplicates(){
+        return mShareDuplicates;
+    }
+    @Override
+    protected void onRefreshed() {
+        int[] aliases = null;
+        if(mShareDuplicates || mHasAliases){
+            aliases = StringItem.markAliases(getChildes(), mShareDuplicates);
+            mHasAliases = aliases != null;
+        }
+        super.onRefreshed();
+        if(aliases == null){
+            return;
+        }
+        IntegerArray offsets = getOffsetArray();
+        int length = aliases.length;
+        for(int i = 0; i < length; i++){
+            int first = aliases[i];
+            if(first >= 0){
+                offsets.put(i, offsets.get(first));
+            }
+        }
+    }
 
     @Override
     protected void refreshChildes(){
-        // Not required
+        // items need no refresh, only the spare capacity is dropped
+        trimToSize();
+    }
+    /**
+     * Loads all string bytes into one buffer shared by the items, instead of one array per item.
+     * An item copies its own bytes only when modified. On shareable reader
+     * (see {@link BlockReader#setShareable(boolean)}) the source bytes are viewed directly.
+     * */
+    @Override
+    int readChildes(BlockReader reader, T[] childes, int[] offsetArray, int zeroPosition) throws IOException{
+        int max=childes.length;
+        int lastIndex=-1;
+        int lastOffset=-1;
+        for(int i=0;i<max;i++){
+            int offset=offsetArray[i];
+            if(offset>lastOffset){
+                lastOffset=offset;
+                lastIndex=i;
+            }
+        }
+        if(lastIndex==-1){
+            return super.readChildes(reader, childes, offsetArray, zeroPosition);
+        }
+        T lastItem=childes[lastIndex];
+        reader.seek(zeroPosition+lastOffset);
+        lastItem.readBytes(reader);
+        int length=lastOffset+lastItem.countBytes();
+        reader.seek(zeroPosition);
+        byte[] buffer=reader.getShareableArray();
+        int bufferOffset;
+        if(buffer!=null){
+            bufferOffset=reader.getArrayPosition();
+        }else {
+            buffer=new byte[length];
+            bufferOffset=0;
+            reader.readFully(buffer);
+        }
+        for(int i=0;i<max;i++){
+            T item=childes[i];
+            int offset=offsetArray[i];
+            if(offset==-1){
+                item.setNull(true);
+                continue;
+            }
+            item.setSharedBytes(buffer, bufferOffset+offset);
+        }
+        return zeroPosition+length;
     }
     // Only styled strings
     @Override
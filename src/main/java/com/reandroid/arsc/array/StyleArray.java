@@ -58,7 +58,8 @@ public class StyleArray extends OffsetBlockArray<StyleItem> implements JSONConve
     }
     @Override
     protected void refreshChildes(){
-        // Not required
+        // items need no refresh, only the spare capacity is dropped
+        trimToSize();
     }
     @Override
     public StyleItem newInstance() {
@@ -100,13 +100,9 @@ public class TypeBlockArray extends BlockArray<TypeBlock>
         return typeBlock;
     }
     public TypeBlock getTypeBlock(String qualifiers){
-        TypeBlock[] items=getChildes();
-        if(items==null){
-            return null;
-        }
-        int max=items.length;
+        int max=childesCount();
         for(int i=0;i<max;i++){
-            TypeBlock block=items[i];
+            TypeBlock block=get(i);
             if(block.getResConfig().isEqualQualifiers(qualifiers)){
                 return block;
             }
@@ -117,13 +113,9 @@ public class TypeBlockArray extends BlockArray<TypeBlock>
         if(config==null){
             return null;
         }
-        TypeBlock[] items=getChildes();
-        if(items==null){
-            return null;
-        }
-        int max=items.length;
+        int max=childesCount();
         for(int i=0;i<max;i++){
-            TypeBlock block=items[i];
+            TypeBlock block=get(i);
             if(config.equals(block.getResConfig())){
                 return block;
             }
@@ -132,13 +124,9 @@ public class TypeBlockArray extends BlockArray<TypeBlock>
     }
     public void setTypeId(byte id){
         this.mTypeId=id;
-        TypeBlock[] allChildes=getChildes();
-        if(allChildes==null){
-            return;
-        }
-        int max=allChildes.length;
+        int max=childesCount();
         for(int i=0;i<max;i++){
-            TypeBlock typeBlock = allChildes[i];
+            TypeBlock typeBlock = get(i);
             typeBlock.setTypeId(id);
         }
     }
@@ -150,13 +138,9 @@ public class TypeBlockArray extends BlockArray<TypeBlock>
         if(mTypeId != 0){
             return mTypeId;
         }
-        TypeBlock[] allChildes=getChildes();
-        if(allChildes==null){
-            return 0;
-        }
-        int max=allChildes.length;
+        int max=childesCount();
         for(int i=0;i<max;i++){
-            TypeBlock typeBlock = allChildes[i];
+            TypeBlock typeBlock = get(i);
             byte id=typeBlock.getTypeId();
             if(id==0){
                 continue;
@@ -242,8 +226,8 @@ public class TypeBlockArray extends BlockArray<TypeBlock>
     }
     public int getHighestEntryCount(){
         int result=0;
-        for(TypeBlock typeBlock:getChildes()){
-            int count=typeBlock.getEntryArray().childesCount();
+        for(TypeBlock typeBlock:listItems()){
+            int count=typeBlock.getEntryCount();
             if(count>result){
                 result=count;
             }
@@ -251,12 +235,12 @@ public class TypeBlockArray extends BlockArray<TypeBlock>
         return result;
     }
     public void setEntryCount(int count){
-        for(TypeBlock typeBlock:getChildes()){
+        for(TypeBlock typeBlock:listItems()){
             typeBlock.setEntryCount(count);
         }
     }
     public TypeString getTypeString(){
-        for(TypeBlock typeBlock:getChildes()){
+        for(TypeBlock typeBlock:listItems()){
             TypeString typeString=typeBlock.getTypeString();
             if(typeString!=null){
                 return typeString;
@@ -307,11 +291,11 @@ public class TypeBlockArray extends BlockArray<TypeBlock>
         if(entryName==null){
             return null;
         }
-        TypeBlock[] childes = getChildes();
-        if(childes==null || childes.length==0){
+        TypeBlock typeBlock = get(0);
+        if(typeBlock==null){
             return null;
         }
-        return childes[0].searchByEntryName(entryName);
+        return typeBlock.searchByEntryName(entryName);
     }
     @Override
     public int compare(TypeBlock typeBlock1, TypeBlock typeBlock2) {
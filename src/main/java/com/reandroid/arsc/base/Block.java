@@ -16,6 +16,7 @@
 package com.reandroid.arsc.base;
 
 import com.reandroid.arsc.io.BlockLoad;
+import com.reandroid.arsc.io.ByteArrayWriter;
 import com.reandroid.arsc.io.BlockReader;
 
 import java.io.IOException;
@@ -59,11 +60,28 @@ public abstract class Block {
         return onWriteBytes(stream);
     }
     protected abstract int onWriteBytes(OutputStream stream) throws IOException;
+    /**
+     * Serializes into one array sized from countBytes(), instead of
+     * concatenating bytes of each child on every nesting level
+     * */
+    protected final byte[] writeBytesToArray(){
+        ByteArrayWriter writer=new ByteArrayWriter(countBytes());
+        try {
+            writeBytes(writer);
+        } catch (IOException ignored) {
+            // ByteArrayWriter does not throw
+        }
+        return writer.toByteArray();
+    }
     public boolean isNull(){
         return mNull;
     }
     public void setNull(boolean is_null){
+        if(is_null==mNull){
+            return;
+        }
         mNull=is_null;
+        onBytesLengthChanged();
     }
     public final int getIndex(){
         return mIndex;
@@ -85,7 +103,27 @@ public abstract class Block {
         if(parent==this){
             return;
         }
+        Block old=mParent;
         mParent=parent;
+        if(old!=null && old!=parent){
+            old.onBytesLengthChanged();
+        }
+        if(parent!=null){
+            parent.onBytesLengthChanged();
+        }
+    }
+    /**
+     * Clears cached bytes count of this block and all of its parents,
+     * must be called whenever the bytes length of this block changes
+     * */
+    protected final void onBytesLengthChanged(){
+        Block block=this;
+        while (block!=null){
+            block.clearCountBytesCache();
+            block=block.mParent;
+        }
+    }
+    void clearCountBytesCache(){
     }
     public final Block getParent(){
         return mParent;
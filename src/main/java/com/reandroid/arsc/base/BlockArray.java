@@ -20,6 +20,7 @@ import java.util.*;
 
 public abstract class BlockArray<T extends Block> extends BlockContainer<T> implements BlockArrayCreator<T>  {
     private T[] elementData;
+    private int size;
     public BlockArray(){
         elementData= newInstance(0);
     }
@@ -40,10 +41,60 @@ public abstract class BlockArray<T extends Block> extends BlockContainer<T> impl
             }
         };
     }
+    /**
+     * Returns the elements with array length equals to {@link #childesCount()}, while there is
+     * spare capacity reserved by adding (i.e. until the next refresh) this is a copy.
+     * Iterate with {@link #childesCount()} and {@link #get(int)} on frequent calls.
+     * */
     @Override
     public T[] getChildes(){
+        T[] data=elementData;
+        int count=size;
+        if(data.length==count){
+            return data;
+        }
+        return Arrays.copyOf(data, count);
+    }
+    /**
+     * Elements beyond {@link #childesCount()} are always null
+     * */
+    @Override
+    protected T[] getChildesArray(){
         return elementData;
     }
+    @Override
+    protected void refreshChildes(){
+        trimToSize();
+        super.refreshChildes();
+    }
+    public void trimToSize(){
+        T[] data=elementData;
+        int count=size;
+        if(data.length==count){
+            return;
+        }
+        T[] update=newInstance(count);
+        System.arraycopy(data, 0, update, 0, count);
+        elementData=update;
+    }
+    /**
+     * Reserves space for the given number of elements, so that adding items one by one
+     * does not re-allocate the array on each add
+     * */
+    public void ensureCapacity(int capacity){
+        T[] data=elementData;
+        int length=data.length;
+        if(capacity<=length){
+            return;
+        }
+        int grow=length + (length >> 1);
+        if(grow>capacity){
+            capacity=grow;
+        }
+        T[] update=newInstance(capacity);
+        System.arraycopy(data, 0, update, 0, size);
+        elementData=update;
+    }
     public void ensureSize(int size){
         if(size<= childesCount()){
             return;
@@ -66,10 +117,10 @@ public abstract class BlockArray<T extends Block> extends BlockContainer<T> impl
     }
     public void clearChildes(){
         T[] allChildes=elementData;
-        if(allChildes==null || allChildes.length==0){
+        if(allChildes==null || size==0){
             return;
         }
-        int max=allChildes.length;
+        int max=size;
         for(int i=0;i<max;i++){
             T block=allChildes[i];
             if(block==null){
@@ -80,21 +131,17 @@ public abstract class BlockArray<T extends Block> extends BlockContainer<T> impl
             allChildes[i]=null;
         }
         elementData=newInstance(0);
+        size=0;
+        onBytesLengthChanged();
     }
     public void addAll(T[] blocks){
         if(blocks==null||blocks.length==0){
             return;
         }
-        T[] old=elementData;
-        if(old==null){
-            old=newInstance(0);
-        }
-        int oldLen=old.length;
+        int oldLen=size;
         int len=blocks.length;
-        T[] update= newInstance(oldLen+len);
-        if(oldLen>0){
-            System.arraycopy(old, 0, update, 0, oldLen);
-        }
+        ensureCapacity(oldLen+len);
+        T[] update=elementData;
         boolean foundNull=false;
         for(int i=0;i<len;i++){
             T item=blocks[i];
@@ -107,18 +154,51 @@ public abstract class BlockArray<T extends Block> extends BlockContainer<T> impl
             item.setParent(this);
             item.setIndex(index);
         }
-        elementData=update;
+        size=oldLen+len;
+        onBytesLengthChanged();
         if(foundNull){
             trimNullBlocks();
         }
     }
+    /**
+     * Replaces all elements with the given blocks on the given order, index of each block is
+     * set once (see {@link Block#onIndexChanged(int, int)}). Previous elements not included
+     * are detached.
+     * */
+    public void replaceChildes(T[] blocks){
+        T[] old=elementData;
+        int oldSize=size;
+        int count=blocks.length;
+        T[] update=newInstance(count);
+        System.arraycopy(blocks, 0, update, 0, count);
+        elementData=update;
+        size=count;
+        for(int i=0;i<count;i++){
+            T block=update[i];
+            block.setParent(this);
+            block.setIndex(i);
+        }
+        for(int i=0;i<oldSize;i++){
+            T block=old[i];
+            if(block==null){
+                continue;
+            }
+            int index=block.getIndex();
+            if(index<0 || index>=count || update[index]!=block){
+                block.setIndex(-1);
+                block.setParent(null);
+            }
+        }
+        onBytesLengthChanged();
+    }
     public void sort(Comparator<T> comparator){
         T[] data=this.elementData;
-        if(comparator==null || data==null || data.length<2){
+        int count=size;
+        if(comparator==null || data==null || count<2){
             return;
         }
-        Arrays.sort(data, 0, data.length, comparator);
-        for(int i=0;i<data.length;i++){
+        Arrays.sort(data, 0, count, comparator);
+        for(int i=0;i<count;i++){
             data[i].setIndex(i);
         }
     }
@@ -128,8 +208,8 @@ public abstract class BlockArray<T extends Block> extends BlockContainer<T> impl
             count = index;
         }
         ensureSize(count + 1);
-        T[] childes = getChildes();
-        int lastIndex = childes.length - 2;
+        T[] childes = elementData;
+        int lastIndex = size - 2;
         for(int i = lastIndex; i >= index; i--){
             T exist = childes[i];
             childes[i] = null;
@@ -151,13 +231,10 @@ public abstract class BlockArray<T extends Block> extends BlockContainer<T> impl
         if(block==null){
             return;
         }
-        T[] old=elementData;
-        int index=old.length;
-        elementData= newInstance(index+1);
-        if(index>0){
-            System.arraycopy(old, 0, elementData, 0, index);
-        }
+        int index=size;
+        ensureCapacity(index+1);
         elementData[index]=block;
+        size=index+1;
         block.setIndex(index);
         block.setParent(this);
     }
@@ -165,7 +242,7 @@ public abstract class BlockArray<T extends Block> extends BlockContainer<T> impl
         return countNonNull(true);
     }
     public final int childesCount(){
-        return elementData.length;
+        return size;
     }
     public final T createNext(){
         T block=newInstance();
@@ -173,7 +250,7 @@ public abstract class BlockArray<T extends Block> extends BlockContainer<T> impl
         return block;
     }
     public final T get(int i){
-        if(i >= childesCount() || i<0){
+        if(i >= size || i<0){
             return null;
         }
         return elementData[i];
@@ -183,7 +260,7 @@ public abstract class BlockArray<T extends Block> extends BlockContainer<T> impl
         if(items==null){
             return -1;
         }
-        int len=items.length;
+        int len=size;
         for(int i=0;i<len;i++){
             if(block==items[i]){
                 return i;
@@ -196,7 +273,7 @@ public abstract class BlockArray<T extends Block> extends BlockContainer<T> impl
         if(items==null){
             return -1;
         }
-        int len=items.length;
+        int len=size;
         int result=-1;
         for(int i=0;i<len;i++){
             if(block==items[i]){
@@ -217,7 +294,7 @@ public abstract class BlockArray<T extends Block> extends BlockContainer<T> impl
         if(block==null || items==null){
             return false;
         }
-        int len=items.length;
+        int len=size;
         for(int i=0;i<len;i++){
             if(block==items[i]){
                 return true;
@@ -227,10 +304,10 @@ public abstract class BlockArray<T extends Block> extends BlockContainer<T> impl
     }
     public void remove(Collection<T> blockList){
         T[] items=elementData;
-        if(items==null || items.length==0){
+        if(items==null || size==0){
             return;
         }
-        int len=items.length;
+        int len=size;
         for(T block:blockList){
             if(block==null){
                 continue;
@@ -244,6 +321,7 @@ public abstract class BlockArray<T extends Block> extends BlockContainer<T> impl
             }
             items[i]=null;
         }
+        onBytesLengthChanged();
         trimNullBlocks();
     }
     public boolean remove(T block){
@@ -255,13 +333,16 @@ public abstract class BlockArray<T extends Block> extends BlockContainer<T> impl
             return false;
         }
         boolean found=false;
-        int len=items.length;
+        int len=size;
         for(int i=0;i<len;i++){
             if(block==items[i]){
                 items[i]=null;
                 found=true;
             }
         }
+        if(found){
+            onBytesLengthChanged();
+        }
         if(found && trim){
             trimNullBlocks();
         }
@@ -273,7 +354,7 @@ public abstract class BlockArray<T extends Block> extends BlockContainer<T> impl
             return;
         }
         int count=countNonNull(false);
-        int len=items.length;
+        int len=size;
         if(count==len){
             return;
         }
@@ -288,6 +369,7 @@ public abstract class BlockArray<T extends Block> extends BlockContainer<T> impl
             }
         }
         elementData=update;
+        size=count;
     }
     private int countNonNull(boolean is_null_check){
         T[] items=elementData;
@@ -295,7 +377,9 @@ public abstract class BlockArray<T extends Block> extends BlockContainer<T> impl
             return 0;
         }
         int result=0;
-        for(T block:items){
+        int len=size;
+        for(int i=0;i<len;i++){
+            T block=items[i];
             if(block!=null){
                 if(is_null_check && block.isNull()){
                     continue;
@@ -306,26 +390,26 @@ public abstract class BlockArray<T extends Block> extends BlockContainer<T> impl
         return result;
     }
     private void changeSize(int amount){
-        T[] old=elementData;
-        int index=old.length;
-        int size=index+amount;
-        T[] update= newInstance(size);
-        int end;
-        if(index>size){
-            end=size;
-        }else {
-            end=index;
-        }
-        if(end>0){
-            System.arraycopy(old, 0, update, 0, end);
-        }
-        for(int i=end;i<size;i++){
+        int index=this.size;
+        int count=index+amount;
+        if(count<index){
+            T[] update= newInstance(count);
+            System.arraycopy(elementData, 0, update, 0, count);
+            elementData=update;
+            this.size=count;
+            onBytesLengthChanged();
+            return;
+        }
+        ensureCapacity(count);
+        T[] update=elementData;
+        for(int i=index;i<count;i++){
             T item=newInstance();
             update[i]=item;
             item.setIndex(i);
             item.setParent(this);
         }
-        elementData=update;
+        this.size=count;
+        onBytesLengthChanged();
     }
 
     @Override
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 
 public abstract class BlockContainer<T extends Block> extends Block{
+    private int mCountBytesCache=-1;
     public BlockContainer(){
         super();
     }
@@ -39,7 +40,7 @@ public abstract class BlockContainer<T extends Block> extends Block{
         onRefreshed();
     }
     protected void refreshChildes(){
-        T[] childes=getChildes();
+        T[] childes=getChildesArray();
         if(childes!=null){
             int max=childes.length;
             for(int i=0;i<max;i++){
@@ -63,7 +64,7 @@ public abstract class BlockContainer<T extends Block> extends Block{
             counter.FOUND=true;
             return;
         }
-        T[] childes=getChildes();
+        T[] childes=getChildesArray();
         if(childes==null){
             return;
         }
@@ -83,11 +84,15 @@ public abstract class BlockContainer<T extends Block> extends Block{
         if(isNull()){
             return 0;
         }
-        T[] childes=getChildes();
+        int result=mCountBytesCache;
+        if(result>=0){
+            return result;
+        }
+        T[] childes=getChildesArray();
         if(childes==null){
             return 0;
         }
-        int result=0;
+        result=0;
         int max=childes.length;
         for(int i=0;i<max;i++){
             T item=childes[i];
@@ -95,33 +100,29 @@ public abstract class BlockContainer<T extends Block> extends Block{
                 result += item.countBytes();
             }
         }
+        mCountBytesCache=result;
         return result;
     }
     @Override
+    void clearCountBytesCache(){
+        mCountBytesCache=-1;
+    }
+    @Override
     public byte[] getBytes(){
         if(isNull()){
             return null;
         }
-        T[] childes=getChildes();
-        if(childes==null){
+        if(countBytes()==0){
             return null;
         }
-        byte[] results=null;
-        int max=childes.length;
-        for(int i=0;i<max;i++){
-            T item=childes[i];
-            if(item!=null){
-                results = addBytes(results, item.getBytes());
-            }
-        }
-        return results;
+        return writeBytesToArray();
     }
     @Override
     public int onWriteBytes(OutputStream stream) throws IOException {
         if(isNull()){
             return 0;
         }
-        T[] childes=getChildes();
+        T[] childes=getChildesArray();
         if(childes==null){
             return 0;
         }
@@ -138,7 +139,7 @@ public abstract class BlockContainer<T extends Block> extends Block{
 
     @Override
     public void onReadBytes(BlockReader reader) throws IOException{
-        T[] childes=getChildes();
+        T[] childes=getChildesArray();
         if(childes==null){
             return;
         }
@@ -153,4 +154,10 @@ public abstract class BlockContainer<T extends Block> extends Block{
 
     public abstract int childesCount();
     public abstract T[] getChildes();
+    /**
+     * Returns the array iterated on refresh, count, read and write; null elements are skipped
+     * */
+    protected T[] getChildesArray(){
+        return getChildes();
+    }
 }
@@ -50,6 +50,7 @@ package com.reandroid.arsc.chunk;
     private final PackageBody mBody;
 
     private final Map<Integer, EntryGroup> mEntriesGroup;
+    private boolean mLazyEntries;
 
     public PackageBlock() {
         super(new PackageHeader(), 3);
@@ -184,7 +185,7 @@ package com.reandroid.arsc.chunk;
         return mBody.getLibraryBlock();
     }
     public Set<Integer> listResourceIds(){
-        return mEntriesGroup.keySet();
+        return getEntriesGroupMap().keySet();
     }
     public Entry getOrCreateEntry(byte typeId, short entryId, String qualifiers){
         return getSpecTypePairArray().getOrCreateEntry(typeId, entryId, qualifiers);
@@ -199,8 +200,54 @@ package com.reandroid.arsc.chunk;
         return getSpecTypePairArray().getTypeBlock(typeId, qualifiers);
     }
     public Map<Integer, EntryGroup> getEntriesGroupMap(){
+        parseLazyEntries();
         return mEntriesGroup;
     }
+    /**
+     * Parses entries of all type blocks loaded on lazy mode, see {@link TableBlock#setLazyLoad(boolean)}
+     * */
+    public void parseLazyEntries(){
+        if(!mLazyEntries){
+            return;
+        }
+        mLazyEntries=false;
+        for(SpecTypePair specTypePair:listAllSpecTypePair()){
+            for(TypeBlock typeBlock:specTypePair.listTypeBlocks()){
+                typeBlock.parseLazyEntries();
+            }
+        }
+    }
+    private void parseLazyEntries(int resourceId){
+        if(!mLazyEntries){
+            return;
+        }
+        byte typeId=(byte) ((resourceId>>16) & 0xff);
+        for(SpecTypePair specTypePair:listSpecTypePair(typeId)){
+            for(TypeBlock typeBlock:specTypePair.listTypeBlocks()){
+                typeBlock.parseLazyEntries();
+            }
+        }
+    }
+    /**
+     * Adds type blocks having unparsed entries to the given list, the caller is responsible
+     * for parsing them
+     * */
+    void collectLazyTypeBlocks(List<TypeBlock> results){
+        if(!mLazyEntries){
+            return;
+        }
+        mLazyEntries=false;
+        for(SpecTypePair specTypePair:listAllSpecTypePair()){
+            for(TypeBlock typeBlock:specTypePair.listTypeBlocks()){
+                if(typeBlock.hasLazyEntries()){
+                    results.add(typeBlock);
+                }
+            }
+        }
+    }
+    void onLazyTypeBlockLoaded(){
+        mLazyEntries=true;
+    }
     public Collection<EntryGroup> listEntryGroup(){
         return getEntriesGroupMap().values();
     }
@@ -213,14 +260,16 @@ package com.reandroid.arsc.chunk;
         if(resourceId==0){
             return null;
         }
-        EntryGroup entryGroup=getEntriesGroupMap().get(resourceId);
+        parseLazyEntries(resourceId);
+        EntryGroup entryGroup=mEntriesGroup.get(resourceId);
         if(entryGroup!=null){
             return entryGroup;
         }
         StagedAliasEntry stagedAliasEntry = searchByStagedResId(resourceId);
         if(stagedAliasEntry!=null){
-            return getEntriesGroupMap()
-                    .get(stagedAliasEntry.getFinalizedResId());
+            int finalizedResId=stagedAliasEntry.getFinalizedResId();
+            parseLazyEntries(finalizedResId);
+            return mEntriesGroup.get(finalizedResId);
         }
         return null;
     }
@@ -235,21 +284,21 @@ package com.reandroid.arsc.chunk;
             return;
         }
         int id= entry.getResourceId();
-        EntryGroup group=getEntriesGroupMap().get(id);
+        EntryGroup group=mEntriesGroup.get(id);
         if(group==null){
             return;
         }
         group.remove(entry);
         if(group.size()==0){
-            getEntriesGroupMap().remove(id);
+            mEntriesGroup.remove(id);
         }
     }
     private void updateEntryGroup(Entry entry){
         int resId= entry.getResourceId();
-        EntryGroup group=getEntriesGroupMap().get(resId);
+        EntryGroup group=mEntriesGroup.get(resId);
         if(group==null){
             group=new EntryGroup(resId);
-            getEntriesGroupMap().put(resId, group);
+            mEntriesGroup.put(resId, group);
         }
         group.add(entry);
     }
@@ -17,11 +17,14 @@ package com.reandroid.arsc.chunk;
 
 import com.reandroid.arsc.BuildInfo;
 import com.reandroid.arsc.array.PackageArray;
+import com.reandroid.arsc.base.Block;
 import com.reandroid.arsc.group.EntryGroup;
 import com.reandroid.arsc.header.HeaderBlock;
 import com.reandroid.arsc.header.InfoHeader;
 import com.reandroid.arsc.header.TableHeader;
+import com.reandroid.arsc.header.TypeHeader;
 import com.reandroid.arsc.io.BlockReader;
+import com.reandroid.arsc.io.FileChannelWriter;
 import com.reandroid.arsc.pool.StringPool;
 import com.reandroid.arsc.pool.TableStringPool;
 import com.reandroid.arsc.value.StagedAliasEntry;
@@ -31,15 +34,27 @@ import com.reandroid.json.JSONArray;
 import com.reandroid.json.JSONObject;
 
 import java.io.*;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class TableBlock extends Chunk<TableHeader>
         implements MainChunk, JSONConvert<JSONObject> {
     private final TableStringPool mTableStringPool;
     private final PackageArray mPackageArray;
     private final Set<TableBlock> mFrameWorks=new HashSet<>();
+    private boolean mLazyLoad;
+    private ExecutorService mExecutorService;
+    private int mCompactEncoding;
+    private boolean mReferenceTracking=true;
     public TableBlock() {
         super(new TableHeader(), 2);
         TableHeader header = getHeaderBlock();
@@ -48,6 +63,130 @@ public class TableBlock extends Chunk<TableHeader>
         addChild(mTableStringPool);
         addChild(mPackageArray);
     }
+    /**
+     * On lazy load, entries of each TypeBlock are kept as raw bytes and parsed on first access,
+     * unparsed blocks are written back as they are. Must be set before reading bytes.
+     * String references of unparsed entries are not linked, call {@link #parseLazyEntries()}
+     * before operations relying on string references.
+     * */
+    public void setLazyLoad(boolean lazyLoad){
+        this.mLazyLoad=lazyLoad;
+    }
+    public boolean isLazyLoad(){
+        return mLazyLoad;
+    }
+    /**
+     * When set, entries of type blocks are parsed concurrently on the given executor
+     * (e.g {@link java.util.concurrent.ForkJoinPool#commonPool()}). On reading, chunks are scanned
+     * sequentially keeping entries as raw bytes like lazy load, then each type block is parsed
+     * detached from the tree and linked back (string references and entry groups) in order.
+     * Also applies to {@link #parseLazyEntries()}. Must be set before reading bytes.
+     * The executor is not shutdown by this class.
+     * */
+    public void setExecutorService(ExecutorService executorService){
+        this.mExecutorService=executorService;
+    }
+    /**
+     * Allowed entry offset encodings of type blocks, any combination of
+     * {@link TypeHeader#FLAG_SPARSE} (API 26+) and {@link TypeHeader#FLAG_OFFSET16} (API 34+).
+     * On refresh, each type block picks the smallest of the allowed encodings, thus pass 0
+     * (default) to keep encodings as they are read.
+     * */
+    public void setCompactEncoding(int flags){
+        this.mCompactEncoding=flags & (TypeHeader.FLAG_SPARSE | TypeHeader.FLAG_OFFSET16);
+    }
+    public int getCompactEncoding(){
+        return mCompactEncoding;
+    }
+    /**
+     * Disabling skips keeping references of table and spec strings (see
+     * {@link StringPool#isReferenceTracking()}), saves memory and time on read-only loads.
+     * Must be set before reading bytes, removing unused strings is not allowed afterwards.
+     * */
+    public void setReferenceTracking(boolean referenceTracking){
+        this.mReferenceTracking=referenceTracking;
+    }
+    public boolean isReferenceTracking(){
+        return mReferenceTracking;
+    }
+    boolean isDeferredEntries(){
+        return mLazyLoad || mExecutorService!=null;
+    }
+    public void parseLazyEntries(){
+        ExecutorService executorService=mExecutorService;
+        if(executorService!=null){
+            try {
+                parseLazyEntries(executorService);
+            } catch (IOException ex) {
+                throw new IllegalStateException("Failed to parse entries", ex);
+            }
+            return;
+        }
+        for(PackageBlock packageBlock:listPackages()){
+            packageBlock.parseLazyEntries();
+        }
+    }
+    private void parseLazyEntries(ExecutorService executorService) throws IOException {
+        List<TypeBlock> typeBlockList=new ArrayList<>();
+        for(PackageBlock packageBlock:listPackages()){
+            packageBlock.collectLazyTypeBlocks(typeBlockList);
+        }
+        int size=typeBlockList.size();
+        if(size==0){
+            return;
+        }
+        Block[] parents=new Block[size];
+        for(int i=0;i<size;i++){
+            TypeBlock typeBlock=typeBlockList.get(i);
+            parents[i]=typeBlock.getParent();
+            typeBlock.setParent(null);
+        }
+        List<Future<Void>> futures=new ArrayList<>(size);
+        AtomicBoolean aborted=new AtomicBoolean();
+        try {
+            for(TypeBlock typeBlock:typeBlockList){
+                futures.add(executorService.submit(new ParseTask(typeBlock, aborted)));
+            }
+            for(Future<Void> future:futures){
+                awaitResult(future);
+            }
+        }finally {
+            // Blocks are attached back only after all tasks are finished,
+            // on failure the blocks not parsed remain lazy
+            aborted.set(true);
+            awaitDone(futures);
+            for(int i=0;i<size;i++){
+                typeBlockList.get(i).setParent(parents[i]);
+            }
+            for(TypeBlock typeBlock:typeBlockList){
+                if(!typeBlock.hasLazyEntries()){
+                    typeBlock.linkEntries();
+                    continue;
+                }
+                PackageBlock packageBlock=typeBlock.getPackageBlock();
+                if(packageBlock!=null){
+                    packageBlock.onLazyTypeBlockLoaded();
+                }
+            }
+        }
+    }
+    private static void awaitResult(Future<Void> future) throws IOException{
+        try {
+            future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(ex.getMessage());
+        } catch (ExecutionException ex) {
+            Throwable cause=ex.getCause();
+            if(cause instanceof IOException){
+                throw (IOException) cause;
+            }
+            if(cause instanceof RuntimeException){
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
     public PackageBlock pickOne(){
         return getPackageArray().pickOne();
     }
@@ -108,11 +247,20 @@ public class TableBlock extends Chunk<TableHeader>
             infoHeader=reader.readHeaderBlock();
         }
         reader.close();
+        ExecutorService executorService=mExecutorService;
+        if(executorService!=null && !isLazyLoad()){
+            parseLazyEntries(executorService);
+        }
     }
 
     public void readBytes(File file) throws IOException{
         BlockReader reader=new BlockReader(file);
-        super.readBytes(reader);
+        try {
+            super.readBytes(reader);
+        } finally {
+            // releases mapping of the file
+            reader.close();
+        }
     }
     public void readBytes(InputStream inputStream) throws IOException{
         BlockReader reader=new BlockReader(inputStream);
@@ -126,9 +274,14 @@ public class TableBlock extends Chunk<TableHeader>
         if(dir!=null && !dir.exists()){
             dir.mkdirs();
         }
-        OutputStream outputStream=new FileOutputStream(file);
-        int length = super.writeBytes(outputStream);
-        outputStream.close();
+        FileChannelWriter writer=new FileChannelWriter(file, countBytes());
+        writer.setGathering(true);
+        int length;
+        try {
+            length = super.writeBytes(writer);
+        }finally {
+            writer.close();
+        }
         return length;
     }
 
@@ -216,19 +369,73 @@ public class TableBlock extends Chunk<TableHeader>
         getPackageArray().merge(tableBlock.getPackageArray());
         refresh();
     }
+    /**
+     * Creates an independent copy of this table that shares the underlying bytes instead of
+     * duplicating them, see {@link #fork(int)}
+     * */
+    public TableBlock fork(){
+        return fork(1).get(0);
+    }
+    /**
+     * Creates the given number of independent copies of this table. The current state is
+     * serialized once and each copy is loaded on lazy mode (see {@link #setLazyLoad(boolean)})
+     * viewing that single snapshot: string bytes and unparsed type entries are not copied.
+     * A string is copied when modified and a type block is parsed from the snapshot on first
+     * access of its entries, thus each copy holds only what has been touched on it.
+     * Frameworks are shared by reference.
+     * */
+    public List<TableBlock> fork(int count){
+        List<TableBlock> results = new ArrayList<>(count);
+        if(count <= 0){
+            return results;
+        }
+        refresh();
+        byte[] snapshot = writeBytesToArray();
+        for(int i = 0; i < count; i++){
+            results.add(createFork(snapshot));
+        }
+        return results;
+    }
+    private TableBlock createFork(byte[] snapshot){
+        TableBlock tableBlock = new TableBlock();
+        tableBlock.setLazyLoad(true);
+        BlockReader reader = new BlockReader(snapshot);
+        reader.setShareable(true);
+        try {
+            tableBlock.readBytes(reader);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to fork: " + this, ex);
+        }
+        tableBlock.mFrameWorks.addAll(getFrameWorks());
+        return tableBlock;
+    }
     public static TableBlock loadWithAndroidFramework(InputStream inputStream) throws IOException{
         TableBlock tableBlock=load(inputStream);
         tableBlock.addFramework(Frameworks.getAndroid());
         return tableBlock;
     }
     public static TableBlock load(File file) throws IOException{
-        return load(new FileInputStream(file));
+        TableBlock tableBlock=new TableBlock();
+        tableBlock.readBytes(file);
+        return tableBlock;
     }
     public static TableBlock load(InputStream inputStream) throws IOException{
         TableBlock tableBlock=new TableBlock();
         tableBlock.readBytes(inputStream);
         return tableBlock;
     }
+    public static TableBlock loadLazy(File file) throws IOException{
+        TableBlock tableBlock=new TableBlock();
+        tableBlock.setLazyLoad(true);
+        tableBlock.readBytes(file);
+        return tableBlock;
+    }
+    public static TableBlock loadLazy(InputStream inputStream) throws IOException{
+        TableBlock tableBlock=new TableBlock();
+        tableBlock.setLazyLoad(true);
+        tableBlock.readBytes(inputStream);
+        return tableBlock;
+    }
 
     public static boolean isResTableBlock(File file){
         if(file==null){
@@ -269,6 +476,42 @@ public class TableBlock extends Chunk<TableHeader>
         ChunkType chunkType=headerBlock.getChunkType();
         return chunkType==ChunkType.TABLE;
     }
+    private static void awaitDone(List<Future<Void>> futures){
+        boolean interrupted=false;
+        for(Future<Void> future:futures){
+            while (true){
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted=true;
+                } catch (ExecutionException ignored) {
+                    break;
+                } catch (CancellationException ignored) {
+                    break;
+                }
+            }
+        }
+        if(interrupted){
+            Thread.currentThread().interrupt();
+        }
+    }
+    private static class ParseTask implements Callable<Void> {
+        private final TypeBlock typeBlock;
+        private final AtomicBoolean aborted;
+        ParseTask(TypeBlock typeBlock, AtomicBoolean aborted){
+            this.typeBlock=typeBlock;
+            this.aborted=aborted;
+        }
+        @Override
+        public Void call() throws IOException {
+            if(!aborted.get()){
+                typeBlock.readLazyEntries();
+            }
+            return null;
+        }
+    }
+
     public static final String FILE_NAME="resources.arsc";
 
     private static final String NAME_packages="packages";
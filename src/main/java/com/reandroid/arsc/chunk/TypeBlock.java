@@ -18,6 +18,7 @@ package com.reandroid.arsc.chunk;
 import com.reandroid.arsc.array.EntryArray;
 import com.reandroid.arsc.base.Block;
 import com.reandroid.arsc.container.SpecTypePair;
+import com.reandroid.arsc.header.HeaderBlock;
 import com.reandroid.arsc.header.TypeHeader;
 import com.reandroid.arsc.io.BlockLoad;
 import com.reandroid.arsc.io.BlockReader;
@@ -29,7 +30,6 @@ import com.reandroid.arsc.value.ValueType;
 import com.reandroid.json.JSONConvert;
 import com.reandroid.json.JSONObject;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -38,20 +38,95 @@ import java.util.List;
 public class TypeBlock extends Chunk<TypeHeader>
         implements BlockLoad, JSONConvert<JSONObject>, Comparable<TypeBlock> {
 
+    private final EntryOffsetArray mEntryOffsets;
     private final EntryArray mEntryArray;
+    private final ByteArray mUnparsedBytes;
+    private int mUnparsedStart;
+    private boolean mLazyEntries;
     private TypeString mTypeString;
     public TypeBlock() {
-        super(new TypeHeader(), 2);
+        super(new TypeHeader(), 3);
         TypeHeader header = getHeaderBlock();
 
-        IntegerArray entryOffsets = new IntegerArray();
-        this.mEntryArray = new EntryArray(entryOffsets,
+        this.mEntryOffsets = new EntryOffsetArray(header.getFlags());
+        this.mEntryArray = new EntryArray(mEntryOffsets,
                 header.getCount(), header.getEntriesStart());
+        this.mUnparsedBytes = new ByteArray();
 
-        header.getFlags().setBlockLoad(this);
-
-        addChild(entryOffsets);
+        addChild(mEntryOffsets);
         addChild(mEntryArray);
+        addChild(mUnparsedBytes);
+    }
+    /**
+     * Returns true if this block is loaded on lazy mode (see {@link TableBlock#setLazyLoad(boolean)})
+     * and the entries are not parsed yet, the raw bytes are kept as they are for write back
+     * */
+    public boolean hasLazyEntries(){
+        return mLazyEntries;
+    }
+    /**
+     * Parses entries kept as raw bytes on lazy load, does nothing if already parsed
+     * */
+    public void parseLazyEntries(){
+        try {
+            readLazyEntries();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to parse entries of: " + this, ex);
+        }
+    }
+    /**
+     * When called while detached from parent, nothing outside of this block is touched thus
+     * type blocks can be parsed concurrently. Once attached back, {@link #linkEntries()}
+     * must be called. On failure, entries are left unparsed as before the call.
+     * */
+    void readLazyEntries() throws IOException {
+        if(!mLazyEntries){
+            return;
+        }
+        mLazyEntries = false;
+        ByteArray unparsed = mUnparsedBytes;
+        byte[] body = unparsed.getBytes();
+        unparsed.clear();
+        int start = mUnparsedStart;
+        // header region is not read here, entry positions are relative to chunk start
+        byte[] bytes = new byte[start + body.length];
+        System.arraycopy(body, 0, bytes, start, body.length);
+        BlockReader reader = new BlockReader(bytes);
+        TypeHeader header = getHeaderBlock();
+        int count = header.getCount().get();
+        int entriesStart = header.getEntriesStart().get();
+        boolean parsed = false;
+        try {
+            reader.seek(start);
+            mEntryArray.onBlockLoaded(reader, header.getCount());
+            mEntryOffsets.readBytes(reader);
+            mEntryArray.readBytes(reader);
+            parsed = true;
+        } finally {
+            reader.close();
+            if(!parsed){
+                // clearing entries resets header values too
+                mEntryArray.clearChildes();
+                header.getCount().set(count);
+                header.getEntriesStart().set(entriesStart);
+                unparsed.set(body);
+                mLazyEntries = true;
+            }
+        }
+    }
+    /**
+     * Links string references and entry groups of entries read while detached from parent
+     * */
+    void linkEntries(){
+        PackageBlock packageBlock = getPackageBlock();
+        Iterator<Entry> itr = mEntryArray.iterator(true);
+        while (itr.hasNext()){
+            Entry entry = itr.next();
+            if(packageBlock != null){
+                packageBlock.updateEntry(entry);
+            }
+            entry.linkStringReferences();
+        }
     }
     public PackageBlock getPackageBlock(){
         SpecTypePair specTypePair = getParent(SpecTypePair.class);
@@ -110,14 +185,57 @@ public class TypeBlock extends Chunk<TypeHeader>
         }
         return null;
     }
+    /**
+     * Number of entry slots, taken from header while entries are not parsed
+     * */
+    public int getEntryCount(){
+        if(mLazyEntries){
+            int count = getHeaderBlock().getCount().get();
+            if(count == 0 || !isSparse()){
+                return count;
+            }
+            // sparse: (id, offset) pairs are sorted by id, the last one is the highest
+            return (0xffff & mUnparsedBytes.getShort((count - 1) * 4)) + 1;
+        }
+        return mEntryArray.childesCount();
+    }
     public void setEntryCount(int count){
-        IntegerItem entryCount = getHeaderBlock().getCount();
-        if(count == entryCount.get()){
+        if(count == getEntryCount()){
             return;
         }
-        entryCount.set(count);
+        if(mLazyEntries && isSparse()){
+            // trailing absent entries are not encoded on sparse, no need to parse
+            return;
+        }
+        if(!isSparse()){
+            getHeaderBlock().getCount().set(count);
+        }
         onSetEntryCount(count);
     }
+    /**
+     * Type flag {@link TypeHeader#FLAG_SPARSE}, entry offsets are written as
+     * sorted (id, offset) of present entries only. Entries are still accessed by id.
+     * */
+    public boolean isSparse(){
+        return mEntryOffsets.isSparse();
+    }
+    public void setSparse(boolean sparse){
+        setEntryEncoding(sparse ? TypeHeader.FLAG_SPARSE : 0);
+    }
+    /**
+     * Type flag {@link TypeHeader#FLAG_OFFSET16}, entry offsets are written as 16-bit values
+     * */
+    public boolean isOffset16(){
+        return mEntryOffsets.getEncoding() == TypeHeader.FLAG_OFFSET16;
+    }
+    public void setOffset16(boolean offset16){
+        setEntryEncoding(offset16 ? TypeHeader.FLAG_OFFSET16 : 0);
+    }
+    private void setEntryEncoding(int encoding){
+        parseLazyEntries();
+        mEntryOffsets.setEncoding(encoding);
+        mEntryArray.refreshCountAndStart();
+    }
     public boolean isEmpty(){
         return getEntryArray().isEmpty();
     }
@@ -186,6 +304,7 @@ public class TypeBlock extends Chunk<TypeHeader>
         return getHeaderBlock().getConfig();
     }
     public EntryArray getEntryArray(){
+        parseLazyEntries();
         return mEntryArray;
     }
     public List<Entry> listEntries(){
@@ -208,27 +327,108 @@ public class TypeBlock extends Chunk<TypeHeader>
         getEntryArray().setChildesCount(count);
     }
     @Override
+    protected void refreshChildes(){
+        if(mLazyEntries){
+            getHeaderBlock().refresh();
+            return;
+        }
+        super.refreshChildes();
+        refreshEntryEncoding();
+    }
+    /**
+     * Falls back to 32-bit offsets if entries do not fit on current encoding, and picks
+     * the smallest of allowed encodings (see {@link TableBlock#setCompactEncoding(int)})
+     * */
+    private void refreshEntryEncoding(){
+        EntryOffsetArray offsets = mEntryOffsets;
+        int encoding = offsets.getEncoding();
+        if(!offsets.canEncode(encoding)){
+            encoding = 0;
+        }
+        TableBlock tableBlock = getParentInstance(TableBlock.class);
+        int allowed = tableBlock != null ? tableBlock.getCompactEncoding() : 0;
+        if(allowed != 0){
+            allowed = allowed | encoding;
+            encoding = 0;
+            int size = offsets.countBytes(0);
+            int[] candidates = new int[]{TypeHeader.FLAG_OFFSET16, TypeHeader.FLAG_SPARSE};
+            for(int candidate : candidates){
+                if((allowed & candidate) == 0 || !offsets.canEncode(candidate)){
+                    continue;
+                }
+                int count = offsets.countBytes(candidate);
+                if(count < size){
+                    size = count;
+                    encoding = candidate;
+                }
+            }
+        }
+        offsets.setEncoding(encoding);
+    }
+    @Override
     protected void onChunkRefreshed() {
-        getEntryArray().refreshCountAndStart();
+        if(mLazyEntries){
+            refreshLazyEntriesStart();
+            return;
+        }
+        mEntryArray.refreshCountAndStart();
+    }
+    private void refreshLazyEntriesStart(){
+        TypeHeader header = getHeaderBlock();
+        int headerSize = header.countBytes();
+        int start = mUnparsedStart;
+        if(headerSize == start){
+            return;
+        }
+        IntegerItem entriesStart = header.getEntriesStart();
+        entriesStart.set(entriesStart.get() - start + headerSize);
+        mUnparsedStart = headerSize;
+    }
+    @Override
+    public void onReadBytes(BlockReader reader) throws IOException {
+        if(!isLazyLoad()){
+            super.onReadBytes(reader);
+            return;
+        }
+        HeaderBlock headerBlock = reader.readHeaderBlock();
+        checkInvalidChunk(headerBlock);
+        int chunkSize = headerBlock.getChunkSize();
+        BlockReader chunkReader = reader.create(chunkSize);
+        TypeHeader header = getHeaderBlock();
+        IntegerItem count = header.getCount();
+        // do not create entries until parsed
+        count.setBlockLoad(null);
+        header.readBytes(chunkReader);
+        count.setBlockLoad(mEntryArray);
+        int start = chunkReader.getPosition();
+        mUnparsedStart = start;
+        byte[] shared = chunkReader.getShareableArray();
+        if(shared != null){
+            mUnparsedBytes.setShared(shared, chunkReader.getArrayPosition(), chunkSize - start);
+        }else {
+            mUnparsedBytes.set(chunkReader.readBytes(chunkSize - start));
+        }
+        mLazyEntries = true;
+        reader.offset(chunkSize);
+        chunkReader.close();
+        PackageBlock packageBlock = getPackageBlock();
+        if(packageBlock != null){
+            packageBlock.onLazyTypeBlockLoaded();
+        }
+        onChunkLoaded();
+    }
+    private boolean isLazyLoad(){
+        TableBlock tableBlock = getParentInstance(TableBlock.class);
+        return tableBlock != null && tableBlock.isDeferredEntries();
     }
     @Override
     protected void onPreRefreshRefresh(){
         getHeaderBlock().getConfig().refresh();
         super.onPreRefreshRefresh();
     }
-    /*
-    * method Block.addBytes is inefficient for large size byte array
-    * so let's override here because this block is the largest
-    */
     @Override
     public byte[] getBytes(){
-        ByteArrayOutputStream os=new ByteArrayOutputStream();
-        try {
-            writeBytes(os);
-            os.close();
-        } catch (IOException ignored) {
-        }
-        return os.toByteArray();
+        return writeBytesToArray();
     }
     @Override
     public JSONObject toJson() {
@@ -281,11 +481,6 @@ public class TypeBlock extends Chunk<TypeHeader>
     }
     @Override
     public void onBlockLoaded(BlockReader reader, Block sender) throws IOException {
-        if(sender==getHeaderBlock().getFlags()){
-            if(getHeaderBlock().getFlags().unsignedInt()==0x1){
-                //ResTable_sparseTypeEntry ?
-            }
-        }
     }
     @Override
     public String toString(){
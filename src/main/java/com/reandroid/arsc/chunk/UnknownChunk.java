@@ -16,6 +16,7 @@
 package com.reandroid.arsc.chunk;
 
  import com.reandroid.arsc.header.HeaderBlock;
+ import com.reandroid.arsc.io.FileChannelWriter;
  import com.reandroid.arsc.item.ByteArray;
 
  import java.io.*;
@@ -54,13 +55,7 @@ public class UnknownChunk extends Chunk<HeaderBlock> implements HeaderBlock.Head
      }
      @Override
      public byte[] getBytes(){
-         ByteArrayOutputStream os=new ByteArrayOutputStream();
-         try {
-             writeBytes(os);
-             os.close();
-         } catch (IOException ignored) {
-         }
-         return os.toByteArray();
+         return writeBytesToArray();
      }
      public int readBytes(File file) throws IOException{
          FileInputStream inputStream=new FileInputStream(file);
@@ -82,9 +77,14 @@ public class UnknownChunk extends Chunk<HeaderBlock> implements HeaderBlock.Head
                  throw new IOException("Can not create directory: "+dir);
              }
          }
-         OutputStream outputStream=new FileOutputStream(file);
-         int length = super.writeBytes(outputStream);
-         outputStream.close();
+         FileChannelWriter writer=new FileChannelWriter(file, countBytes());
+         writer.setGathering(true);
+         int length;
+         try {
+             length = super.writeBytes(writer);
+         }finally {
+             writer.close();
+         }
          return length;
      }
      @Override
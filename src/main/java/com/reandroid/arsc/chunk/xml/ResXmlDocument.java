@@ -22,6 +22,7 @@
  import com.reandroid.arsc.container.SingleBlockContainer;
  import com.reandroid.arsc.header.HeaderBlock;
  import com.reandroid.arsc.io.BlockReader;
+ import com.reandroid.arsc.io.FileChannelWriter;
  import com.reandroid.arsc.pool.ResXmlStringPool;
  import com.reandroid.arsc.pool.StringPool;
  import com.reandroid.arsc.value.ValueType;
@@ -80,19 +81,9 @@
              element.linkStringReferences();
          }
      }
-     /*
-      * method Block.addBytes is inefficient for large size byte array
-      * so let's override here because this block is the largest
-      */
      @Override
      public byte[] getBytes(){
-         ByteArrayOutputStream os=new ByteArrayOutputStream();
-         try {
-             writeBytes(os);
-             os.close();
-         } catch (IOException ignored) {
-         }
-         return os.toByteArray();
+         return writeBytesToArray();
      }
      @Override
      public void onReadBytes(BlockReader reader) throws IOException {
@@ -188,7 +179,12 @@
      }
      public void readBytes(File file) throws IOException{
          BlockReader reader=new BlockReader(file);
-         super.readBytes(reader);
+         try {
+             super.readBytes(reader);
+         } finally {
+             // releases mapping of the file
+             reader.close();
+         }
      }
      public void readBytes(InputStream inputStream) throws IOException{
          BlockReader reader=new BlockReader(inputStream);
@@ -202,9 +198,14 @@
          if(dir!=null && !dir.exists()){
              dir.mkdirs();
          }
-         OutputStream outputStream=new FileOutputStream(file);
-         int length = super.writeBytes(outputStream);
-         outputStream.close();
+         FileChannelWriter writer=new FileChannelWriter(file, countBytes());
+         writer.setGathering(true);
+         int length;
+         try {
+             length = super.writeBytes(writer);
+         }finally {
+             writer.close();
+         }
          return length;
      }
      @Override
@@ -72,13 +72,10 @@ public class BlockList<T extends Block> extends Block {
     }
     @Override
     public byte[] getBytes() {
-        byte[] results=null;
-        for(T item:mItems){
-            if(item!=null){
-                results=addBytes(results, item.getBytes());
-            }
+        if(countBytes()==0){
+            return null;
         }
-        return results;
+        return writeBytesToArray();
     }
     @Override
     public int countBytes() {
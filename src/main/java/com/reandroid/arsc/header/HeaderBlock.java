@@ -145,7 +145,15 @@ import java.util.List;
     @Override
     public void onReadBytes(BlockReader reader) throws IOException {
         int start=reader.getPosition();
-        super.onReadBytes(reader);
+        readTypeAndSize(reader);
+        Block[] childes=getChildes();
+        int max=childes.length;
+        for(int i=3;i<max;i++){
+            Block item=childes[i];
+            if(item!=null){
+                item.readBytes(reader);
+            }
+        }
         int readActual=reader.getPosition() - start;
         int difference=getHeaderSize()-readActual;
         initExtraBytes(this.extraBytes, difference);
@@ -153,6 +161,18 @@ import java.util.List;
             this.extraBytes.readBytes(reader);
         }
     }
+    /**
+     * Decodes the common type, headerSize and chunkSize fields straight from reader
+     * */
+    private void readTypeAndSize(BlockReader reader) throws IOException {
+        mType.set(reader.readShortLE());
+        onChunkTypeLoaded(mType.get());
+        mHeaderSize.set(reader.readShortLE());
+        onHeaderSizeLoaded(mHeaderSize.unsignedInt());
+        mChunkSize.set(reader.readIntLE());
+        onChunkSizeLoaded(mHeaderSize.unsignedInt(),
+                mChunkSize.get());
+    }
     @Override
     public void onBlockLoaded(BlockReader reader, Block sender) throws IOException {
         if(sender==this.mType){
@@ -73,4 +73,14 @@ public class TypeHeader extends HeaderBlock{
                 +", config=" + getConfig()
                 +", flags=" + getFlags().toHex() + '}';
     }
+
+    /**
+     * Entries are indexed by sorted (entry id, offset/4) pairs of present entries only,
+     * the count is number of present entries (API 26+)
+     * */
+    public static final int FLAG_SPARSE = 0x01;
+    /**
+     * Entry offsets are 16-bit values of offset/4, 0xffff for no entry (API 34+)
+     * */
+    public static final int FLAG_OFFSET16 = 0x02;
 }
@@ -19,24 +19,46 @@ import com.reandroid.arsc.header.HeaderBlock;
 import com.reandroid.arsc.header.InfoHeader;
 
 import java.io.*;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 
 
  public class BlockReader extends InputStream {
-    private final Object mLock=new Object();
-    private byte[] BUFFER;
+    private ByteBuffer BUFFER;
+    private byte[] mArray;
+    private int mArrayOffset;
+    private ByteBuffer mView;
     private final int mStart;
     private final int mLength;
     private int mPosition;
     private boolean mIsClosed;
     private int mMark;
+    private boolean mShareable;
+    private ByteBuffer mMapping;
     public BlockReader(byte[] buffer, int start, int length) {
-        this.BUFFER=buffer;
+        this(ByteBuffer.wrap(buffer), start, length);
+    }
+    public BlockReader(byte[] buffer) {
+        this(buffer, 0, buffer.length);
+    }
+    /**
+     * Reads directly from the given buffer without copying, the buffer could be
+     * heap or direct (e.g memory-mapped). The start is absolute index on the buffer.
+     * */
+    public BlockReader(ByteBuffer buffer, int start, int length) {
+        this.BUFFER=buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if(buffer.hasArray()){
+            this.mArray=buffer.array();
+            this.mArrayOffset=buffer.arrayOffset();
+        }
         this.mStart=start;
         this.mLength=length;
         this.mPosition =0;
     }
-    public BlockReader(byte[] buffer) {
-        this(buffer, 0, buffer.length);
+    public BlockReader(ByteBuffer buffer) {
+        this(buffer, buffer.position(), buffer.remaining());
     }
     public BlockReader(InputStream in) throws IOException {
         this(loadBuffer(in));
@@ -44,68 +66,127 @@ import java.io.*;
     public BlockReader(InputStream in, int length) throws IOException {
         this(loadBuffer(in, length));
     }
+    /**
+     * Maps the file read-only if it is larger than {@link #MAP_THRESHOLD}, thus parsing is done
+     * from page cache instead of loading whole file bytes to heap. Smaller files are read to heap.
+     * The mapping is released on {@link #close()}, readers created from this reader
+     * can not be used afterwards.
+     * */
     public BlockReader(File file) throws IOException {
-        this(loadBuffer(file));
+        this(loadFile(file), true);
+    }
+    private BlockReader(ByteBuffer buffer, boolean owner) {
+        this(buffer);
+        if(owner && buffer.isDirect()){
+            this.mMapping = buffer;
+        }
     }
     public int readUnsignedShort() throws IOException {
         return 0x0000ffff & readShort();
     }
+    /**
+     * Reads short at current position without advancing, same as peekShort(0)
+     * */
     public short readShort() throws IOException {
-        int pos = getPosition();
-        byte[] bts = new byte[2];
-        readFully(bts);
-        seek(pos);
-        return toShort(bts, 0);
+        return peekShort(0);
+    }
+    /**
+     * Reads little-endian integer directly from backing buffer and advances position by 4
+     * */
+    public int readIntLE() throws IOException {
+        int pos = mPosition;
+        checkAvailable(pos, 4);
+        int value = BUFFER.getInt(mStart + pos);
+        mPosition = pos + 4;
+        return value;
+    }
+    /**
+     * Reads little-endian short directly from backing buffer and advances position by 2
+     * */
+    public short readShortLE() throws IOException {
+        int pos = mPosition;
+        checkAvailable(pos, 2);
+        short value = BUFFER.getShort(mStart + pos);
+        mPosition = pos + 2;
+        return value;
+    }
+    /**
+     * Reads little-endian integer at (current position + offset) without advancing
+     * */
+    public int peekInt(int offset) throws IOException {
+        int pos = mPosition + offset;
+        checkAvailable(pos, 4);
+        return BUFFER.getInt(mStart + pos);
+    }
+    /**
+     * Reads little-endian short at (current position + offset) without advancing
+     * */
+    public short peekShort(int offset) throws IOException {
+        int pos = mPosition + offset;
+        checkAvailable(pos, 2);
+        return BUFFER.getShort(mStart + pos);
+    }
+    private void checkAvailable(int pos, int length) throws IOException {
+        if(mIsClosed){
+            throw new IOException("Stream is closed");
+        }
+        if(pos < 0 || pos + length > mLength){
+            throw new EOFException("Finished reading: " + pos);
+        }
     }
     public InfoHeader readHeaderBlock() throws IOException {
-        InfoHeader infoHeader = new InfoHeader();
-        if(available() < infoHeader.countBytes()){
+        if(available() < 8){
             return null;
         }
-        int pos = getPosition();
-        infoHeader.readBytes(this);
-        seek(pos);
+        InfoHeader infoHeader = new InfoHeader();
+        infoHeader.setType(peekShort(0));
+        infoHeader.setHeaderSize(peekShort(2));
+        infoHeader.setChunkSize(peekInt(4));
         return infoHeader;
     }
     public int searchNextIntPosition(int bytesOffset, int value){
         if(mIsClosed || mPosition>=mLength){
             return -1;
         }
-        synchronized (mLock){
-            int actPos=mStart+mPosition+bytesOffset;
-            int max=available()/4;
-            for(int i=0;i<max;i++){
-                int pos=actPos+(i*4);
-                int valCur=toInt(BUFFER, pos);
-                if(valCur==value){
-                    return pos-mStart;
-                }
+        ByteBuffer buffer=BUFFER;
+        int actPos=mStart+mPosition+bytesOffset;
+        int max=available()/4;
+        for(int i=0;i<max;i++){
+            int pos=actPos+(i*4);
+            int valCur=buffer.getInt(pos);
+            if(valCur==value){
+                return pos-mStart;
             }
-            return -1;
         }
-    }
-    private int toInt(byte[] bts, int offset){
-        return bts[offset] & 0xff |
-                (bts[offset+1] & 0xff) << 8 |
-                (bts[offset+2] & 0xff) << 16 |
-                (bts[offset+3] & 0xff) << 24;
-    }
-    private short toShort(byte[] bts, int offset){
-         return (short) (bts[offset] & 0xff |
-                          (bts[offset+1] & 0xff) << 8);
+        return -1;
     }
     public byte[] getBytes(){
         int len = length();
-        if(this.BUFFER.length == len){
-            return BUFFER;
+        byte[] array = this.mArray;
+        if(array!=null && mArrayOffset==0 && array.length == len){
+            return array;
         }
         byte[] bytes = new byte[len];
         if(len==0){
             return bytes;
         }
-        System.arraycopy(BUFFER, mStart, bytes, 0, len);
+        copyTo(mStart, bytes, 0, len);
         return bytes;
     }
+    private void copyTo(int actPos, byte[] bts, int start, int length){
+        byte[] array = this.mArray;
+        if(array!=null){
+            System.arraycopy(array, mArrayOffset + actPos, bts, start, length);
+            return;
+        }
+        ByteBuffer view = this.mView;
+        if(view==null){
+            view = BUFFER.duplicate();
+            this.mView = view;
+        }
+        setBufferPosition(view, actPos);
+        view.get(bts, start, length);
+    }
     public BlockReader create(int len){
         return create(getPosition(), len);
     }
@@ -115,7 +196,35 @@ import java.io.*;
             len = this.mLength - start;
         }
         start = start + this.mStart;
-        return new BlockReader(BUFFER, start, len);
+        BlockReader reader = new BlockReader(BUFFER, start, len);
+        reader.mShareable = this.mShareable;
+        return reader;
+    }
+    /**
+     * Declares the source bytes are never modified, thus blocks may keep views on
+     * {@link #getShareableArray()} instead of copying. Readers created from this
+     * reader inherit the flag.
+     * */
+    public void setShareable(boolean shareable){
+        this.mShareable = shareable;
+    }
+    public boolean isShareable(){
+        return mShareable;
+    }
+    /**
+     * Returns the backing heap array if this reader is shareable, otherwise null
+     * */
+    public byte[] getShareableArray(){
+        if(!mShareable){
+            return null;
+        }
+        return mArray;
+    }
+    /**
+     * Index of the current position on {@link #getShareableArray()}
+     * */
+    public int getArrayPosition(){
+        return mArrayOffset + mStart + mPosition;
     }
     public boolean isAvailable(){
         if(mIsClosed){
@@ -136,12 +245,7 @@ import java.io.*;
         setPosition(relPos);
     }
     private void setPosition(int pos){
-        if(pos==mPosition){
-            return;
-        }
-        synchronized (mLock){
-            mPosition=pos;
-        }
+        mPosition=pos;
     }
     public int length(){
         return mLength;
@@ -186,19 +290,14 @@ import java.io.*;
         if(length<len){
             len=length;
         }
-        synchronized (mLock){
-            int actPos=mStart+mPosition;
-            int i;
-            for(i=0;i<len;i++){
-                bts[start+i] = BUFFER[actPos+i];
-                mPosition++;
-                if(mPosition>=mLength){
-                    i++;
-                    break;
-                }
-            }
-            return i;
+        int avail=available();
+        if(avail<len){
+            len=avail;
         }
+        int actPos=mStart+mPosition;
+        copyTo(actPos, bts, start, len);
+        mPosition+=len;
+        return len;
     }
     public int getPosition(){
         return mPosition;
@@ -218,12 +317,9 @@ import java.io.*;
         if(i>=mLength){
             throw new EOFException("Finished reading: "+i);
         }
-        synchronized (mLock){
-            int actPos=mStart+i;
-            int val=BUFFER[actPos] & 0xff;
-            mPosition++;
-            return val;
-        }
+        int val=BUFFER.get(mStart+i) & 0xff;
+        mPosition=i+1;
+        return val;
     }
     @Override
     public void mark(int pos){
@@ -244,7 +340,14 @@ import java.io.*;
     public void close(){
         mIsClosed=true;
         BUFFER=null;
+        mArray=null;
+        mView=null;
         mMark=0;
+        ByteBuffer mapping=mMapping;
+        if(mapping!=null){
+            mMapping=null;
+            ByteBufferUtil.unmap(mapping);
+        }
     }
     @Override
     public String toString(){
@@ -276,11 +379,28 @@ import java.io.*;
     }
 
 
-    private static byte[] loadBuffer(File file) throws IOException {
-        FileInputStream in=new FileInputStream(file);
-        byte[] result = loadBuffer(in);
-        in.close();
-        return result;
+    private static ByteBuffer loadFile(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try{
+            FileChannel fileChannel = randomAccessFile.getChannel();
+            long size = fileChannel.size();
+            if(size > Integer.MAX_VALUE){
+                throw new IOException("File too large to map: " + size + ", " + file);
+            }
+            if(size <= MAP_THRESHOLD){
+                byte[] bytes = new byte[(int) size];
+                randomAccessFile.readFully(bytes);
+                return ByteBuffer.wrap(bytes);
+            }
+            // The mapping remains valid after the channel is closed
+            return fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }finally {
+            randomAccessFile.close();
+        }
+    }
+    // Buffer#position(int) is covariant on java 9+, call through Buffer to run on java 8
+    private static void setBufferPosition(Buffer buffer, int position){
+        buffer.position(position);
     }
     private static byte[] loadBuffer(InputStream in) throws IOException {
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
@@ -313,4 +433,10 @@ import java.io.*;
     public static InfoHeader readHeaderBlock(InputStream inputStream) throws IOException{
         return InfoHeader.readHeaderBlock(inputStream);
     }
+
+    /**
+     * Files up to this size are read to heap instead of mapping, a mapping costs a syscall
+     * and a slot of vm.max_map_count which is not worth for small files
+     * */
+    public static final int MAP_THRESHOLD = 1024 * 1024;
 }
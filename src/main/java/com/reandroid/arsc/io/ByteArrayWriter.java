@@ -0,0 +1,77 @@
+ /*
+  *  Copyright (C) 2022 github.com/REAndroid
+  *
+  *  Licensed under the Apache License, Version 2.0 (the "License");
+  *  you may not use this file except in compliance with the License.
+  *  You may obtain a copy of the License at
+  *
+  *      http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package com.reandroid.arsc.io;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Writes into a single array allocated once with the expected length,
+ * used to serialize blocks without concatenating bytes of each child
+ * */
+public class ByteArrayWriter extends OutputStream {
+    private byte[] mBuffer;
+    private int mPosition;
+    public ByteArrayWriter(int length){
+        super();
+        if(length<0){
+            length=0;
+        }
+        this.mBuffer=new byte[length];
+    }
+    public int getPosition(){
+        return mPosition;
+    }
+    @Override
+    public void write(int b){
+        int position=mPosition;
+        ensureCapacity(position+1);
+        mBuffer[position]=(byte) b;
+        mPosition=position+1;
+    }
+    @Override
+    public void write(byte[] bts, int offset, int length){
+        if(length<=0){
+            return;
+        }
+        int position=mPosition;
+        ensureCapacity(position+length);
+        System.arraycopy(bts, offset, mBuffer, position, length);
+        mPosition=position+length;
+    }
+    // grows only if the expected length was wrong
+    private void ensureCapacity(int length){
+        byte[] buffer=mBuffer;
+        if(length<=buffer.length){
+            return;
+        }
+        int size=buffer.length*2;
+        if(size<length){
+            size=length;
+        }
+        mBuffer=Arrays.copyOf(buffer, size);
+    }
+    /**
+     * Returns the backing array without copy if the written length equals to the expected length
+     * */
+    public byte[] toByteArray(){
+        byte[] buffer=mBuffer;
+        if(mPosition==buffer.length){
+            return buffer;
+        }
+        return Arrays.copyOf(buffer, mPosition);
+    }
+}
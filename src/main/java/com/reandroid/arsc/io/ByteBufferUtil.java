@@ -0,0 +1,56 @@
+ /*
+  *  Copyright (C) 2022 github.com/REAndroid
+  *
+  *  Licensed under the Apache License, Version 2.0 (the "License");
+  *  you may not use this file except in compliance with the License.
+  *  You may obtain a copy of the License at
+  *
+  *      http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package com.reandroid.arsc.io;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+public class ByteBufferUtil {
+    /**
+     * Releases memory-mapped buffer now instead of on GC, thus the file can be overwritten or
+     * deleted (e.g on Windows). The buffer must be the one returned by FileChannel#map (not a
+     * duplicate) and neither it nor any of its duplicates may be accessed afterwards.
+     * Best effort: there is no public api, uses Unsafe#invokeCleaner on java 9+ and
+     * DirectBuffer#cleaner on java 8, otherwise the mapping is left to GC.
+     * */
+    public static void unmap(ByteBuffer buffer){
+        if(buffer == null || !buffer.isDirect()){
+            return;
+        }
+        try{
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            invokeCleaner.invoke(field.get(null), buffer);
+            return;
+        }catch (NoSuchMethodException ignored){
+            // java 8
+        }catch (Exception ignored){
+            return;
+        }
+        try{
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if(cleaner != null){
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        }catch (Exception ignored){
+        }
+    }
+}
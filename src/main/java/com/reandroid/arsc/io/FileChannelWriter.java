@@ -0,0 +1,170 @@
+ /*
+  *  Copyright (C) 2022 github.com/REAndroid
+  *
+  *  Licensed under the Apache License, Version 2.0 (the "License");
+  *  you may not use this file except in compliance with the License.
+  *  You may obtain a copy of the License at
+  *
+  *      http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package com.reandroid.arsc.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Block output sink that collects the many small item writes into a large direct buffer
+ * and flushes it to FileChannel. Buffers smaller than {@link #DIRECT_THRESHOLD} are
+ * allocated on heap, direct memory is freed only by GC.
+ * On gathering mode, large arrays are handed to the channel together with the pending
+ * buffer content, without copying.
+ * */
+public class FileChannelWriter extends OutputStream {
+    private final FileChannel fileChannel;
+    private final ByteBuffer buffer;
+    private boolean mGathering;
+    private boolean mForce;
+    private long mPosition;
+    private boolean mClosed;
+    public FileChannelWriter(File file) throws IOException {
+        this(openChannel(file));
+    }
+    /**
+     * Buffer is sized to the expected output length, up to {@link #DEFAULT_BUFFER_SIZE}
+     * */
+    public FileChannelWriter(File file, int expectedLength) throws IOException {
+        this(openChannel(file), Math.min(expectedLength, DEFAULT_BUFFER_SIZE));
+    }
+    public FileChannelWriter(FileChannel fileChannel){
+        this(fileChannel, DEFAULT_BUFFER_SIZE);
+    }
+    public FileChannelWriter(FileChannel fileChannel, int bufferSize){
+        super();
+        this.fileChannel = fileChannel;
+        if(bufferSize < MIN_BUFFER_SIZE){
+            bufferSize = MIN_BUFFER_SIZE;
+        }
+        if(bufferSize < DIRECT_THRESHOLD){
+            this.buffer = ByteBuffer.allocate(bufferSize);
+        }else {
+            this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+    }
+    /**
+     * When enabled, arrays larger than {@link #GATHERING_THRESHOLD} are written
+     * directly by gathering write instead of copying to buffer
+     * */
+    public void setGathering(boolean gathering){
+        this.mGathering = gathering;
+    }
+    /**
+     * When enabled, content is forced to the storage device on close
+     * */
+    public void setForce(boolean force){
+        this.mForce = force;
+    }
+    public long getPosition(){
+        return mPosition;
+    }
+    @Override
+    public void write(int b) throws IOException {
+        checkOpen();
+        ByteBuffer buffer = this.buffer;
+        if(!buffer.hasRemaining()){
+            flushBuffer();
+        }
+        buffer.put((byte) b);
+        mPosition++;
+    }
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        checkOpen();
+        if(length <= 0){
+            return;
+        }
+        if(mGathering && length >= GATHERING_THRESHOLD){
+            writeGathering(bytes, offset, length);
+        }else {
+            writeBuffered(bytes, offset, length);
+        }
+        mPosition += length;
+    }
+    private void writeBuffered(byte[] bytes, int offset, int length) throws IOException {
+        ByteBuffer buffer = this.buffer;
+        while (length > 0){
+            if(!buffer.hasRemaining()){
+                flushBuffer();
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.put(bytes, offset, count);
+            offset += count;
+            length -= count;
+        }
+    }
+    private void writeGathering(byte[] bytes, int offset, int length) throws IOException {
+        ByteBuffer buffer = this.buffer;
+        ((Buffer) buffer).flip();
+        ByteBuffer[] buffers = new ByteBuffer[]{buffer, ByteBuffer.wrap(bytes, offset, length)};
+        ByteBuffer last = buffers[1];
+        while (last.hasRemaining()){
+            fileChannel.write(buffers);
+        }
+        ((Buffer) buffer).clear();
+    }
+    private void flushBuffer() throws IOException {
+        ByteBuffer buffer = this.buffer;
+        if(buffer.position() == 0){
+            return;
+        }
+        ((Buffer) buffer).flip();
+        while (buffer.hasRemaining()){
+            fileChannel.write(buffer);
+        }
+        ((Buffer) buffer).clear();
+    }
+    @Override
+    public void flush() throws IOException {
+        checkOpen();
+        flushBuffer();
+    }
+    private void checkOpen() throws IOException {
+        if(mClosed){
+            throw new IOException("Writer is closed");
+        }
+    }
+    @Override
+    public void close() throws IOException {
+        if(mClosed){
+            return;
+        }
+        mClosed = true;
+        try {
+            flushBuffer();
+            if(mForce){
+                fileChannel.force(false);
+            }
+        }finally {
+            fileChannel.close();
+        }
+    }
+
+    private static FileChannel openChannel(File file) throws IOException {
+        return new FileOutputStream(file).getChannel();
+    }
+
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+    public static final int DIRECT_THRESHOLD = 1024 * 64;
+    private static final int MIN_BUFFER_SIZE = 1024;
+    public static final int GATHERING_THRESHOLD = 1024 * 8;
+}
@@ -28,7 +28,11 @@ public abstract class BlockItem extends Block {
     private byte[] mBytes;
     public BlockItem(int bytesLength){
         super();
-        mBytes=new byte[bytesLength];
+        if(bytesLength==0){
+            mBytes=EMPTY_BYTES;
+        }else {
+            mBytes=new byte[bytesLength];
+        }
     }
     protected void onBytesChanged(){
     }
@@ -37,12 +41,16 @@ public abstract class BlockItem extends Block {
     }
     void setBytesInternal(byte[] bts){
         if(bts==null){
-            bts=new byte[0];
+            bts=EMPTY_BYTES;
         }
         if(bts==mBytes){
             return;
         }
+        boolean lengthChanged=bts.length!=mBytes.length;
         mBytes=bts;
+        if(lengthChanged){
+            onBytesLengthChanged();
+        }
         onBytesChanged();
     }
     final void setBytesLength(int length){
@@ -62,6 +70,7 @@ public abstract class BlockItem extends Block {
         }
         System.arraycopy(mBytes, 0, bts, 0, old);
         mBytes=bts;
+        onBytesLengthChanged();
         if(notify){
             onBytesChanged();
         }
@@ -165,4 +174,6 @@ public abstract class BlockItem extends Block {
         val=left|right;
         bts[byteOffset]=(byte) val;
     }
+
+    private static final byte[] EMPTY_BYTES=new byte[0];
 }
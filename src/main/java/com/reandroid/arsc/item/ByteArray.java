@@ -15,10 +15,16 @@
   */
 package com.reandroid.arsc.item;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
 
 public class ByteArray extends BlockItem {
+    private byte[] mSharedBuffer;
+    private int mSharedOffset;
+    private int mSharedLength;
     public ByteArray(int bytesLength) {
         super(bytesLength);
     }
@@ -26,12 +32,90 @@ public class ByteArray extends BlockItem {
         this(0);
     }
     public final void clear(){
+        if(mSharedBuffer!=null){
+            mSharedBuffer=null;
+            onBytesLengthChanged();
+            onBytesChanged();
+            return;
+        }
         setSize(0);
     }
+    /**
+     * Views the given range instead of copying, the buffer must not be modified afterwards.
+     * The range is copied on first modification or access of internal bytes.
+     * */
+    public final void setShared(byte[] buffer, int offset, int length){
+        setBytesLength(0, false);
+        mSharedBuffer=buffer;
+        mSharedOffset=offset;
+        mSharedLength=length;
+        onBytesLengthChanged();
+        onBytesChanged();
+    }
+    public final boolean isShared(){
+        return mSharedBuffer!=null;
+    }
+    private void copyOnWrite(){
+        byte[] buffer=mSharedBuffer;
+        int offset=mSharedOffset;
+        byte[] bts=Arrays.copyOfRange(buffer, offset, offset+mSharedLength);
+        mSharedBuffer=null;
+        super.setBytesInternal(bts);
+    }
+    @Override
+    protected byte[] getBytesInternal() {
+        if(mSharedBuffer!=null){
+            copyOnWrite();
+        }
+        return super.getBytesInternal();
+    }
+    @Override
+    void setBytesInternal(byte[] bts){
+        if(mSharedBuffer!=null){
+            mSharedBuffer=null;
+            onBytesLengthChanged();
+        }
+        super.setBytesInternal(bts);
+    }
+    @Override
+    int getBytesLength(){
+        if(mSharedBuffer!=null){
+            return mSharedLength;
+        }
+        return super.getBytesLength();
+    }
+    @Override
+    public int countBytes() {
+        if(mSharedBuffer==null || isNull()){
+            return super.countBytes();
+        }
+        return mSharedLength;
+    }
+    @Override
+    public byte[] getBytes() {
+        byte[] buffer=mSharedBuffer;
+        if(buffer==null || isNull()){
+            return super.getBytes();
+        }
+        int offset=mSharedOffset;
+        return Arrays.copyOfRange(buffer, offset, offset+mSharedLength);
+    }
+    @Override
+    protected int onWriteBytes(OutputStream stream) throws IOException {
+        byte[] buffer=mSharedBuffer;
+        if(buffer==null){
+            return super.onWriteBytes(stream);
+        }
+        stream.write(buffer, mSharedOffset, mSharedLength);
+        return mSharedLength;
+    }
     public final void add(byte[] values){
         if(values==null || values.length==0){
             return;
         }
+        if(mSharedBuffer!=null){
+            copyOnWrite();
+        }
         int old=size();
         int len=values.length;
         setBytesLength(old+len, false);
@@ -62,6 +146,9 @@ public class ByteArray extends BlockItem {
         if(s<0){
             s=0;
         }
+        if(mSharedBuffer!=null){
+            copyOnWrite();
+        }
         setBytesLength(s);
     }
     public final int size(){
@@ -100,7 +187,13 @@ public class ByteArray extends BlockItem {
         bts[offset]= (byte) (val & 0xff);
     }
     public final short getShort(int offset){
-        byte[] bts = getBytesInternal();
+        byte[] bts = mSharedBuffer;
+        if(bts!=null){
+            // read through without copying shared range
+            offset+=mSharedOffset;
+        }else {
+            bts = getBytesInternal();
+        }
         return (short) (bts[offset] & 0xff | (bts[offset+1] & 0xff) << 8);
     }
     public final void putInteger(int offset, int val){
@@ -114,10 +207,15 @@ public class ByteArray extends BlockItem {
         bts[offset]= (byte) (val & 0xff);
     }
     public final int getInteger(int offset){
-        byte[] bts = getBytesInternal();
-        if((offset+4)>bts.length){
+        if((offset+4)>getBytesLength()){
             return 0;
         }
+        byte[] bts = mSharedBuffer;
+        if(bts!=null){
+            offset+=mSharedOffset;
+        }else {
+            bts = getBytesInternal();
+        }
         return bts[offset] & 0xff |
                 (bts[offset+1] & 0xff) << 8 |
                 (bts[offset+2] & 0xff) << 16 |
@@ -0,0 +1,203 @@
+ /*
+  *  Copyright (C) 2022 github.com/REAndroid
+  *
+  *  Licensed under the Apache License, Version 2.0 (the "License");
+  *  you may not use this file except in compliance with the License.
+  *  You may obtain a copy of the License at
+  *
+  *      http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package com.reandroid.arsc.item;
+
+import com.reandroid.arsc.header.TypeHeader;
+import com.reandroid.arsc.io.BlockReader;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Entry offsets of type chunk, always kept as 32-bit offsets per entry id (-1 for no entry)
+ * while the bytes read or written follow the type flags: 32-bit offsets,
+ * 16-bit offsets ({@link TypeHeader#FLAG_OFFSET16}) or sorted index of
+ * present entries ({@link TypeHeader#FLAG_SPARSE})
+ * */
+public class EntryOffsetArray extends IntegerArray {
+    private final ByteItem flags;
+    public EntryOffsetArray(ByteItem flags){
+        super();
+        this.flags = flags;
+    }
+    public int getEncoding(){
+        return toEncoding(flags.unsignedInt());
+    }
+    /**
+     * Sets encoding flags of type header, other flag bits are kept
+     * */
+    public void setEncoding(int encoding){
+        encoding = toEncoding(encoding);
+        int value = flags.unsignedInt();
+        if(toEncoding(value) == encoding){
+            return;
+        }
+        value = (value & ~ENCODING_MASK) | encoding;
+        flags.set((byte) value);
+        onBytesLengthChanged();
+    }
+    /**
+     * Must be called after modifying offsets by put/fill, the bytes length of sparse encoding
+     * depends on the number of present entries
+     * */
+    public void onOffsetsChanged(){
+        if(isSparse()){
+            onBytesLengthChanged();
+        }
+    }
+    public boolean isSparse(){
+        return getEncoding() == TypeHeader.FLAG_SPARSE;
+    }
+    public int countPresent(){
+        int result = 0;
+        int size = size();
+        for(int i = 0; i < size; i++){
+            if(get(i) != NO_ENTRY){
+                result++;
+            }
+        }
+        return result;
+    }
+    /**
+     * Returns true if all offsets are representable on the given encoding
+     * */
+    public boolean canEncode(int encoding){
+        encoding = toEncoding(encoding);
+        if(encoding == 0){
+            return true;
+        }
+        int size = size();
+        if(encoding == TypeHeader.FLAG_SPARSE && size > 0x10000){
+            return false;
+        }
+        int[] offsets = toArray();
+        for(int offset : offsets){
+            if(offset == NO_ENTRY){
+                continue;
+            }
+            if((offset & 0x3) != 0 || (offset >>> 2) >= NO_ENTRY16){
+                return false;
+            }
+        }
+        return true;
+    }
+    public int countBytes(int encoding){
+        encoding = toEncoding(encoding);
+        if(encoding == TypeHeader.FLAG_SPARSE){
+            return countPresent() * 4;
+        }
+        if(encoding == TypeHeader.FLAG_OFFSET16){
+            return align4(size() * 2);
+        }
+        return size() * 4;
+    }
+    @Override
+    public int countBytes() {
+        if(isNull()){
+            return 0;
+        }
+        return countBytes(getEncoding());
+    }
+    @Override
+    public byte[] getBytes() {
+        if(isNull() || getEncoding() == 0){
+            return super.getBytes();
+        }
+        return encode(getEncoding());
+    }
+    @Override
+    protected int onWriteBytes(OutputStream stream) throws IOException {
+        int encoding = getEncoding();
+        if(encoding == 0){
+            return super.onWriteBytes(stream);
+        }
+        byte[] bts = encode(encoding);
+        stream.write(bts);
+        return bts.length;
+    }
+    private byte[] encode(int encoding){
+        int[] offsets = toArray();
+        byte[] bts = new byte[countBytes(encoding)];
+        int position = 0;
+        for(int i = 0; i < offsets.length; i++){
+            int offset = offsets[i];
+            if(encoding == TypeHeader.FLAG_SPARSE){
+                if(offset == NO_ENTRY){
+                    continue;
+                }
+                putShort(bts, position, (short) i);
+                position += 2;
+            }
+            int value = offset == NO_ENTRY ? NO_ENTRY16 : (offset >>> 2);
+            putShort(bts, position, (short) value);
+            position += 2;
+        }
+        return bts;
+    }
+    /**
+     * The size must be set before to entry count of type header
+     * */
+    @Override
+    public void onReadBytes(BlockReader reader) throws IOException {
+        int encoding = getEncoding();
+        if(encoding == 0){
+            super.onReadBytes(reader);
+            return;
+        }
+        int count = size();
+        byte[] bts = new byte[encoding == TypeHeader.FLAG_SPARSE ? count * 4 : count * 2];
+        reader.readFully(bts);
+        if(encoding == TypeHeader.FLAG_OFFSET16){
+            for(int i = 0; i < count; i++){
+                int value = 0xffff & getShort(bts, i * 2);
+                put(i, value == NO_ENTRY16 ? NO_ENTRY : (value << 2));
+            }
+            onBytesChanged();
+            return;
+        }
+        int highest = -1;
+        for(int i = 0; i < count; i++){
+            int id = 0xffff & getShort(bts, i * 4);
+            if(id > highest){
+                highest = id;
+            }
+        }
+        setSize(highest + 1);
+        fill(NO_ENTRY);
+        for(int i = 0; i < count; i++){
+            int position = i * 4;
+            int id = 0xffff & getShort(bts, position);
+            int value = 0xffff & getShort(bts, position + 2);
+            put(id, value << 2);
+        }
+        onBytesChanged();
+        onOffsetsChanged();
+    }
+    private static int toEncoding(int flags){
+        flags = flags & ENCODING_MASK;
+        if((flags & TypeHeader.FLAG_SPARSE) != 0){
+            return TypeHeader.FLAG_SPARSE;
+        }
+        return flags;
+    }
+    private static int align4(int length){
+        return (length + 3) & ~0x3;
+    }
+
+    public static final int NO_ENTRY = -1;
+    private static final int NO_ENTRY16 = 0xffff;
+    private static final int ENCODING_MASK = TypeHeader.FLAG_SPARSE | TypeHeader.FLAG_OFFSET16;
+}
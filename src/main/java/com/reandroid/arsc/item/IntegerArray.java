@@ -77,8 +77,9 @@ public class IntegerArray extends BlockItem {
     public final int[] toArray(){
         int s=size();
         int[] result=new int[s];
+        byte[] bts = getBytesInternal();
         for(int i=0;i<s;i++){
-            result[i]=get(i);
+            result[i]=getInteger(bts, i*4);
         }
         return result;
     }
@@ -0,0 +1,225 @@
+ /*
+  *  Copyright (C) 2022 github.com/REAndroid
+  *
+  *  Licensed under the Apache License, Version 2.0 (the "License");
+  *  you may not use this file except in compliance with the License.
+  *  You may obtain a copy of the License at
+  *
+  *      http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package com.reandroid.arsc.item;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Insertion ordered list of references. Small lists are scanned linearly, on the first lookup
+ * (contains/remove) of a grown list an open-addressed table of positions (int array) is built
+ * and kept up to date so that further lookups are O(1). Lists only appended to (e.g. on reading)
+ * never allocate the table. Removed positions are left as holes and compacted in bulk.
+ * */
+class ReferenceList extends AbstractList<ReferenceItem> {
+    private ReferenceItem[] mItems;
+    private int mEnd;
+    private int mSize;
+    private int[] mTable;
+    ReferenceList(){
+        super();
+        this.mItems = new ReferenceItem[2];
+    }
+    boolean addIfAbsent(ReferenceItem ref){
+        if(ref == null || indexOfItem(ref) >= 0){
+            return false;
+        }
+        return add(ref);
+    }
+    @Override
+    public boolean add(ReferenceItem ref){
+        if(ref == null){
+            return false;
+        }
+        int end = mEnd;
+        if(end == mItems.length){
+            if(mSize < end){
+                compact();
+                end = mEnd;
+            }
+            if(end == mItems.length){
+                mItems = Arrays.copyOf(mItems, end + (end >>> 1) + 1);
+            }
+        }
+        mItems[end] = ref;
+        mEnd = end + 1;
+        mSize++;
+        if(mTable != null){
+            if(mEnd * 2 > mTable.length){
+                buildTable();
+            }else {
+                insertTable(ref, end);
+            }
+        }
+        return true;
+    }
+    @Override
+    public boolean remove(Object obj){
+        if(!(obj instanceof ReferenceItem)){
+            return false;
+        }
+        int position = indexOfItem((ReferenceItem) obj);
+        if(position < 0){
+            return false;
+        }
+        mItems[position] = null;
+        mSize--;
+        if(mSize == 0){
+            clear();
+        }else if(mSize < (mEnd >>> 1) && mEnd > LINEAR_LIMIT){
+            compact();
+        }
+        return true;
+    }
+    @Override
+    public boolean removeAll(Collection<?> collection){
+        boolean removed = false;
+        for(Object obj : collection){
+            if(remove(obj)){
+                removed = true;
+            }
+        }
+        return removed;
+    }
+    @Override
+    public boolean contains(Object obj){
+        return obj instanceof ReferenceItem && indexOfItem((ReferenceItem) obj) >= 0;
+    }
+    @Override
+    public ReferenceItem get(int i){
+        if(i < 0 || i >= mSize){
+            throw new IndexOutOfBoundsException("Index: " + i + ", size: " + mSize);
+        }
+        if(mSize != mEnd){
+            compact();
+        }
+        return mItems[i];
+    }
+    @Override
+    public int size(){
+        return mSize;
+    }
+    @Override
+    public void clear(){
+        if(mItems.length > 2){
+            mItems = new ReferenceItem[2];
+        }else {
+            Arrays.fill(mItems, null);
+        }
+        mEnd = 0;
+        mSize = 0;
+        mTable = null;
+    }
+    /**
+     * Snapshot copy, safe to iterate while references are modified
+     * */
+    ReferenceItem[] toReferenceArray(){
+        ReferenceItem[] results = new ReferenceItem[mSize];
+        ReferenceItem[] items = mItems;
+        int end = mEnd;
+        int count = 0;
+        for(int i = 0; i < end; i++){
+            ReferenceItem ref = items[i];
+            if(ref != null){
+                results[count] = ref;
+                count++;
+            }
+        }
+        return results;
+    }
+    private int indexOfItem(ReferenceItem ref){
+        ReferenceItem[] items = mItems;
+        int[] table = mTable;
+        if(table == null && mEnd > LINEAR_LIMIT){
+            buildTable();
+            table = mTable;
+        }
+        if(table == null){
+            int end = mEnd;
+            for(int i = 0; i < end; i++){
+                ReferenceItem item = items[i];
+                if(item != null && ref.equals(item)){
+                    return i;
+                }
+            }
+            return -1;
+        }
+        int mask = table.length - 1;
+        int slot = hash(ref) & mask;
+        while (true){
+            int value = table[slot];
+            if(value == EMPTY){
+                return -1;
+            }
+            if(value > 0){
+                ReferenceItem item = items[value - 1];
+                if(item != null && ref.equals(item)){
+                    return value - 1;
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+    private void compact(){
+        ReferenceItem[] items = mItems;
+        int end = mEnd;
+        int count = 0;
+        for(int i = 0; i < end; i++){
+            ReferenceItem ref = items[i];
+            if(ref != null){
+                items[count] = ref;
+                count++;
+            }
+        }
+        Arrays.fill(items, count, end, null);
+        mEnd = count;
+        if(mTable != null){
+            buildTable();
+        }
+    }
+    private void buildTable(){
+        int length = 16;
+        while (length < mEnd * 4){
+            length = length << 1;
+        }
+        mTable = new int[length];
+        ReferenceItem[] items = mItems;
+        int end = mEnd;
+        for(int i = 0; i < end; i++){
+            ReferenceItem ref = items[i];
+            if(ref != null){
+                insertTable(ref, i);
+            }
+        }
+    }
+    private void insertTable(ReferenceItem ref, int position){
+        int[] table = mTable;
+        int mask = table.length - 1;
+        int slot = hash(ref) & mask;
+        while (table[slot] != EMPTY){
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = position + 1;
+    }
+    private static int hash(ReferenceItem ref){
+        int h = ref.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static final int EMPTY = 0;
+    private static final int LINEAR_LIMIT = 32;
+}
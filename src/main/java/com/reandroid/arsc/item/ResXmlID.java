@@ -19,14 +19,13 @@ import com.reandroid.arsc.base.Block;
 import com.reandroid.arsc.chunk.xml.ResXmlDocument;
 import com.reandroid.arsc.pool.ResXmlStringPool;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class ResXmlID extends IntegerItem {
-    private final List<ReferenceItem> mReferencedList;
+    private final ReferenceList mReferencedList;
     public ResXmlID(int resId){
         super(resId);
-        this.mReferencedList=new ArrayList<>();
+        this.mReferencedList=new ReferenceList();
     }
     public ResXmlID(){
         this(0);
@@ -49,7 +48,7 @@ public class ResXmlID extends IntegerItem {
         return mReferencedList.size();
     }
     private void reUpdateReferences(int newIndex){
-        for(ReferenceItem ref:mReferencedList){
+        for(ReferenceItem ref:mReferencedList.toReferenceArray()){
             ref.set(newIndex);
         }
     }
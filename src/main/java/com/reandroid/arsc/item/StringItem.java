@@ -23,48 +23,107 @@ import com.reandroid.json.JSONObject;
 
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.CharacterCodingException;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class StringItem extends BlockItem implements JSONConvert<JSONObject> {
     private String mCache;
+    private boolean mDecoded;
     private boolean mUtf8;
-    private final List<ReferenceItem> mReferencedList;
+    private boolean mAlias;
+    // null, single ReferenceItem or ReferenceList, most of strings have at most one reference
+    private Object mReferences;
+    private byte[] mSharedBuffer;
+    private int mSharedOffset;
+    private int mSharedLength;
     public StringItem(boolean utf8) {
         super(0);
         this.mUtf8=utf8;
-        this.mReferencedList=new ArrayList<>();
     }
     public boolean removeReference(ReferenceItem ref){
-        return mReferencedList.remove(ref);
+        Object references=mReferences;
+        if(references instanceof ReferenceList){
+            return ((ReferenceList) references).remove(ref);
+        }
+        if(references!=null && ref!=null && ref.equals(references)){
+            mReferences=null;
+            return true;
+        }
+        return false;
     }
     public boolean removeAllReference(Collection<ReferenceItem> referenceItems){
-        return mReferencedList.removeAll(referenceItems);
+        boolean removed=false;
+        for(ReferenceItem ref:referenceItems){
+            if(removeReference(ref)){
+                removed=true;
+            }
+        }
+        return removed;
     }
     public void removeAllReference(){
-        mReferencedList.clear();
+        mReferences=null;
     }
     public boolean hasReference(){
-        return mReferencedList.size()>0;
+        Object references=mReferences;
+        if(references instanceof ReferenceList){
+            return ((ReferenceList) references).size()>0;
+        }
+        return references!=null;
     }
     public List<ReferenceItem> getReferencedList(){
-        return mReferencedList;
+        Object references=mReferences;
+        if(references==null){
+            return Collections.emptyList();
+        }
+        if(references instanceof ReferenceList){
+            return (ReferenceList) references;
+        }
+        return Collections.singletonList((ReferenceItem) references);
     }
+    /**
+     * Ignored if reference tracking is disabled on the parent pool
+     * (see {@link StringPool#isReferenceTracking()})
+     * */
     public void addReference(ReferenceItem ref){
-        if(ref!=null){
-            mReferencedList.add(ref);
-        }
+        addReference(ref, false);
     }
     public void addReferenceIfAbsent(ReferenceItem ref){
-        if(ref!=null && !mReferencedList.contains(ref)){
-            mReferencedList.add(ref);
+        addReference(ref, true);
+    }
+    private void addReference(ReferenceItem ref, boolean ifAbsent){
+        if(ref==null || !isReferenceTracking()){
+            return;
         }
+        Object references=mReferences;
+        if(references==null){
+            mReferences=ref;
+        }else if(references instanceof ReferenceList){
+            ReferenceList referenceList=(ReferenceList) references;
+            if(ifAbsent){
+                referenceList.addIfAbsent(ref);
+            }else {
+                referenceList.add(ref);
+            }
+        }else if(!ifAbsent || !ref.equals(references)){
+            ReferenceList referenceList=new ReferenceList();
+            referenceList.add((ReferenceItem) references);
+            referenceList.add(ref);
+            mReferences=referenceList;
+        }
+    }
+    private boolean isReferenceTracking(){
+        StringPool<?> stringPool = getParentInstance(StringPool.class);
+        return stringPool == null || stringPool.isReferenceTracking();
     }
     public void addReference(Collection<ReferenceItem> refList){
         if(refList==null){
@@ -75,7 +134,15 @@ public class StringItem extends BlockItem implements JSONConvert<JSONObject> {
         }
     }
     private void reUpdateReferences(int newIndex){
-        List<ReferenceItem> referenceItems=new ArrayList<>(mReferencedList);
+        if(!hasReference()){
+            return;
+        }
+        Object references=mReferences;
+        if(!(references instanceof ReferenceList)){
+            ((ReferenceItem) references).set(newIndex);
+            return;
+        }
+        ReferenceItem[] referenceItems=((ReferenceList) references).toReferenceArray();
         for(ReferenceItem ref:referenceItems){
             ref.set(newIndex);
         }
@@ -107,6 +174,10 @@ public class StringItem extends BlockItem implements JSONConvert<JSONObject> {
         return styleItem.applyHtml(str, true);
     }
     public String get(){
+        if(!mDecoded){
+            mCache=decodeString();
+            mDecoded=true;
+        }
         return mCache;
     }
     public void set(String str){
@@ -140,11 +211,110 @@ public class StringItem extends BlockItem implements JSONConvert<JSONObject> {
     }
     @Override
     protected void onBytesChanged() {
-        // To save cpu/memory usage, better to decode once only when bytes changed
-        mCache=decodeString();
+        // To save cpu/memory usage, decoded once on first get() after bytes changed
+        mCache=null;
+        mDecoded=false;
+    }
+    /**
+     * Points this item to its bytes within the string data buffer shared by the pool,
+     * own bytes are allocated only on modification (copy-on-write)
+     * */
+    public void setSharedBytes(byte[] buffer, int offset){
+        mAlias=false;
+        setBytesLength(0, false);
+        int length=calculateReadLength(buffer, offset);
+        mSharedBuffer=buffer;
+        mSharedOffset=offset;
+        mSharedLength=length;
+        onBytesLengthChanged();
+        onBytesChanged();
+    }
+    public boolean isSharedBytes(){
+        return mSharedBuffer!=null;
+    }
+    private void copyOnWrite(){
+        byte[] buffer=mSharedBuffer;
+        int offset=mSharedOffset;
+        byte[] bts=Arrays.copyOfRange(buffer, offset, offset+mSharedLength);
+        mSharedBuffer=null;
+        String cache=mCache;
+        boolean decoded=mDecoded;
+        super.setBytesInternal(bts);
+        mCache=cache;
+        mDecoded=decoded;
+    }
+    @Override
+    protected byte[] getBytesInternal() {
+        if(mSharedBuffer!=null){
+            copyOnWrite();
+        }
+        return super.getBytesInternal();
+    }
+    @Override
+    void setBytesInternal(byte[] bts){
+        if(mAlias){
+            // own bytes are written until next refresh
+            mAlias=false;
+            onBytesLengthChanged();
+        }
+        if(mSharedBuffer!=null){
+            mSharedBuffer=null;
+            onBytesLengthChanged();
+        }
+        super.setBytesInternal(bts);
+    }
+    @Override
+    public int countBytes() {
+        if(mAlias){
+            return 0;
+        }
+        if(mSharedBuffer==null || isNull()){
+            return super.countBytes();
+        }
+        return mSharedLength;
+    }
+    /**
+     * True if bytes of this item are equal to an item placed before on the same pool and
+     * its offset points there instead of writing the bytes again (see {@link #markAliases(StringItem[], boolean)})
+     * */
+    public boolean isAlias(){
+        return mAlias;
+    }
+    private void setAlias(boolean alias){
+        if(alias == mAlias){
+            return;
+        }
+        mAlias = alias;
+        onBytesLengthChanged();
+    }
+    @Override
+    public byte[] getBytes() {
+        byte[] buffer=mSharedBuffer;
+        if(buffer==null || isNull()){
+            return super.getBytes();
+        }
+        int offset=mSharedOffset;
+        return Arrays.copyOfRange(buffer, offset, offset+mSharedLength);
+    }
+    @Override
+    protected int onWriteBytes(OutputStream stream) throws IOException {
+        if(mAlias){
+            return 0;
+        }
+        byte[] buffer=mSharedBuffer;
+        if(buffer==null){
+            return super.onWriteBytes(stream);
+        }
+        stream.write(buffer, mSharedOffset, mSharedLength);
+        return mSharedLength;
     }
     @Override
     public void onReadBytes(BlockReader reader) throws IOException {
+        mAlias=false;
+        if(mSharedBuffer!=null){
+            mSharedBuffer=null;
+            onBytesLengthChanged();
+        }
         if(reader.available()<4){
             return;
         }
@@ -158,20 +328,36 @@ public class StringItem extends BlockItem implements JSONConvert<JSONObject> {
         if(reader.available()<4){
             return reader.available();
         }
-        byte[] bts=new byte[4];
-        reader.readFully(bts);
-        reader.offset(-4);
-        int[] len;
+        int header=reader.peekInt(0);
         if(isUtf8()){
-            len=decodeUtf8StringByteLength(bts);
+            return decodeUtf8StringByteLength(header) + 1;
+        }
+        return decodeUtf16StringByteLength(header) + 2;
+    }
+    private int calculateReadLength(byte[] buffer, int offset){
+        int available=buffer.length-offset;
+        if(available<4){
+            return available;
+        }
+        int header=getInteger(buffer, offset);
+        int length;
+        if(isUtf8()){
+            length=decodeUtf8StringByteLength(header) + 1;
         }else {
-            len=decodeUtf16StringByteLength(bts);
+            length=decodeUtf16StringByteLength(header) + 2;
+        }
+        if(length>available){
+            length=available;
         }
-        int add=isUtf8()?1:2;
-        return len[0]+len[1]+add;
+        return length;
     }
     String decodeString(){
-        return decodeString(getBytesInternal(), mUtf8);
+        byte[] buffer=mSharedBuffer;
+        if(buffer!=null){
+            return decodeString(buffer, mSharedOffset, mSharedLength, mUtf8);
+        }
+        byte[] bts=getBytesInternal();
+        return decodeString(bts, 0, bts.length, mUtf8);
     }
     byte[] encodeString(String str){
         if(mUtf8){
@@ -180,24 +366,24 @@ public class StringItem extends BlockItem implements JSONConvert<JSONObject> {
             return encodeUtf16ToBytes(str);
         }
     }
-    private String decodeString(byte[] allStringBytes, boolean isUtf8) {
-        if(isNullBytes(allStringBytes)){
-            if(allStringBytes==null||allStringBytes.length==0){
+    private String decodeString(byte[] allStringBytes, int offset, int length, boolean isUtf8) {
+        if(isNullBytes(allStringBytes, offset, length)){
+            if(allStringBytes==null||length==0){
                 return null;
             }
             return "";
         }
         int[] offLen;
         if(isUtf8){
-            offLen=decodeUtf8StringByteLength(allStringBytes);
+            offLen=decodeUtf8StringByteLength(allStringBytes, offset);
         }else {
-            offLen=decodeUtf16StringByteLength(allStringBytes);
+            offLen=decodeUtf16StringByteLength(allStringBytes, offset);
         }
         CharsetDecoder charsetDecoder;
         if(isUtf8){
-            charsetDecoder=UTF8_DECODER;
+            charsetDecoder=StandardCharsets.UTF_8.newDecoder();
         }else {
-            charsetDecoder=UTF16LE_DECODER;
+            charsetDecoder=StandardCharsets.UTF_16LE.newDecoder();
         }
         try {
             ByteBuffer buf=ByteBuffer.wrap(allStringBytes, offLen[0], offLen[1]);
@@ -256,8 +442,107 @@ public class StringItem extends BlockItem implements JSONConvert<JSONObject> {
         return "USED BY="+getReferencedList().size()+"{"+str+"}";
     }
 
-    private static int[] decodeUtf8StringByteLength(byte[] lengthBytes) {
-        int offset=0;
+    /**
+     * Marks each item having equal bytes with an earlier item as alias of it, the alias takes no
+     * space and its offset should point to the bytes of the first one. If not enabled, any
+     * previous marks are cleared.
+     * Returns index of the first equal item for each alias and -1 for the others,
+     * or null if there are no aliases.
+     * */
+    public static int[] markAliases(StringItem[] items, boolean enable){
+        if(items == null){
+            return null;
+        }
+        int length = items.length;
+        if(!enable){
+            for(int i = 0; i < length; i++){
+                StringItem item = items[i];
+                if(item != null){
+                    item.setAlias(false);
+                }
+            }
+            return null;
+        }
+        int[] results = null;
+        Map<BytesKey, Integer> firstMap = new HashMap<>(length);
+        for(int i = 0; i < length; i++){
+            StringItem item = items[i];
+            if(item == null){
+                continue;
+            }
+            item.setAlias(false);
+            if(item.isNull()){
+                continue;
+            }
+            BytesKey key = item.toBytesKey();
+            Integer first = firstMap.get(key);
+            if(first == null){
+                firstMap.put(key, i);
+                continue;
+            }
+            if(results == null){
+                results = new int[length];
+                Arrays.fill(results, -1);
+            }
+            results[i] = first;
+            item.setAlias(true);
+        }
+        return results;
+    }
+    private BytesKey toBytesKey(){
+        byte[] buffer = mSharedBuffer;
+        if(buffer != null){
+            return new BytesKey(buffer, mSharedOffset, mSharedLength);
+        }
+        byte[] bts = super.getBytesInternal();
+        return new BytesKey(bts, 0, bts.length);
+    }
+    private static class BytesKey{
+        private final byte[] buffer;
+        private final int offset;
+        private final int length;
+        private final int hash;
+        BytesKey(byte[] buffer, int offset, int length){
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+            int h = 1;
+            int end = offset + length;
+            for(int i = offset; i < end; i++){
+                h = 31 * h + buffer[i];
+            }
+            this.hash = h;
+        }
+        @Override
+        public boolean equals(Object obj){
+            if(obj == this){
+                return true;
+            }
+            if(!(obj instanceof BytesKey)){
+                return false;
+            }
+            BytesKey other = (BytesKey) obj;
+            if(hash != other.hash || length != other.length){
+                return false;
+            }
+            byte[] buffer1 = buffer;
+            byte[] buffer2 = other.buffer;
+            int offset1 = offset;
+            int offset2 = other.offset;
+            for(int i = 0; i < length; i++){
+                if(buffer1[offset1 + i] != buffer2[offset2 + i]){
+                    return false;
+                }
+            }
+            return true;
+        }
+        @Override
+        public int hashCode(){
+            return hash;
+        }
+    }
+
+    private static int[] decodeUtf8StringByteLength(byte[] lengthBytes, int offset) {
         int val = lengthBytes[offset];
         int length;
         if ((val & 0x80) != 0) {
@@ -278,26 +563,65 @@ public class StringItem extends BlockItem implements JSONConvert<JSONObject> {
         }
         return new int[] { offset, length};
     }
-    private static int[] decodeUtf16StringByteLength(byte[] lengthBytes) {
-        int val = ((lengthBytes[1] & 0xFF) << 8 | lengthBytes[0] & 0xFF);
+    /**
+     * Computes offset + length of utf8 string from the first 4 little-endian bytes
+     * */
+    private static int decodeUtf8StringByteLength(int header) {
+        int offset;
+        if ((header & 0x80) != 0) {
+            offset = 2;
+        } else {
+            offset = 1;
+        }
+        int val = (header >>> (offset * 8)) & 0xff;
+        offset += 1;
+        int length;
+        if ((val & 0x80) != 0) {
+            int low = (header >>> (offset * 8)) & 0xff;
+            length = ((val & 0x7F) << 8) + low;
+            offset += 1;
+        } else {
+            length = val;
+        }
+        return offset + length;
+    }
+    /**
+     * Computes offset + length of utf16 string from the first 4 little-endian bytes
+     * */
+    private static int decodeUtf16StringByteLength(int header) {
+        int val = header & 0xffff;
         if ((val & 0x8000) != 0) {
-            int high = (lengthBytes[3] & 0xFF) << 8;
-            int low = (lengthBytes[2] & 0xFF);
+            int len_value = ((val & 0x7FFF) << 16) + ((header >>> 16) & 0xffff);
+            return 4 + len_value * 2;
+        }
+        return 2 + val * 2;
+    }
+    private static int[] decodeUtf16StringByteLength(byte[] lengthBytes, int offset) {
+        int val = ((lengthBytes[offset+1] & 0xFF) << 8 | lengthBytes[offset] & 0xFF);
+        if ((val & 0x8000) != 0) {
+            int high = (lengthBytes[offset+3] & 0xFF) << 8;
+            int low = (lengthBytes[offset+2] & 0xFF);
             int len_value =  ((val & 0x7FFF) << 16) + (high + low);
-            return new int[] {4, len_value * 2};
+            return new int[] {offset+4, len_value * 2};
 
         }
-        return new int[] {2, val * 2};
+        return new int[] {offset+2, val * 2};
     }
     static boolean isNullBytes(byte[] bts){
         if(bts==null){
             return true;
         }
-        int max=bts.length;
-        if(max<2){
+        return isNullBytes(bts, 0, bts.length);
+    }
+    private static boolean isNullBytes(byte[] bts, int offset, int length){
+        if(bts==null){
+            return true;
+        }
+        if(length<2){
             return true;
         }
-        for(int i=2; i<max;i++){
+        int max=offset+length;
+        for(int i=offset+2; i<max;i++){
             if(bts[i] != 0){
                 return false;
             }
@@ -391,8 +715,6 @@ public class StringItem extends BlockItem implements JSONConvert<JSONObject> {
         return result;
     }
 
-    private final CharsetDecoder UTF16LE_DECODER = StandardCharsets.UTF_16LE.newDecoder();
-    private final CharsetDecoder UTF8_DECODER = StandardCharsets.UTF_8.newDecoder();
 
     public static final String NAME_string="string";
     public static final String NAME_style="style";
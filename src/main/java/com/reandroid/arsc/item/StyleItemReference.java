@@ -44,6 +44,6 @@ class StyleItemReference implements ReferenceItem{
     }
     @Override
     public int hashCode(){
-        return stylePiece;
+        return 31 * System.identityHashCode(styleItem) + stylePiece;
     }
 }
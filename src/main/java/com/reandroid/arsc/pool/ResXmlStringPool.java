@@ -70,7 +70,7 @@ import java.util.Objects;
         xmlString.set(str);
         stringsArray.insertItem(index, xmlString);
 
-        updateUniqueIdMap(xmlString);
+        updateUniqueIdMapInserted(xmlString);
         return xmlString;
     }
     private ResXmlString getOrCreateAfter(int position, String str){
@@ -97,6 +97,14 @@ import java.util.Objects;
         super.updateUniqueIdMap(xmlString);
         return xmlString;
     }
+    @Override
+    int countFixedPositions(){
+        ResXmlIDMap resXmlIDMap = getResXmlIDMap();
+        if(resXmlIDMap == null){
+            return 0;
+        }
+        return resXmlIDMap.getResXmlIDArray().childesCount();
+    }
     private ResXmlIDMap getResXmlIDMap(){
         ResXmlDocument resXmlDocument = getParentInstance(ResXmlDocument.class);
         if(resXmlDocument!=null){
@@ -119,7 +127,7 @@ import java.util.Objects;
         stringsArray.ensureSize(i+1);
         ResXmlString xmlString=stringsArray.get(i);
         xmlString.set(str);
-        refreshUniqueIdMap();
+        updateUniqueIdMap(xmlString);
         return xmlString;
     }
     @Override
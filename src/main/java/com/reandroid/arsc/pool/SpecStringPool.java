@@ -19,6 +19,7 @@ import com.reandroid.arsc.array.SpecStringArray;
 import com.reandroid.arsc.array.StringArray;
 import com.reandroid.arsc.base.Block;
 import com.reandroid.arsc.chunk.PackageBlock;
+import com.reandroid.arsc.chunk.TableBlock;
 import com.reandroid.arsc.item.IntegerArray;
 import com.reandroid.arsc.item.IntegerItem;
 import com.reandroid.arsc.item.SpecString;
@@ -35,4 +36,16 @@ public class SpecStringPool extends StringPool<SpecString> {
     public PackageBlock getPackageBlock(){
         return getParent(PackageBlock.class);
     }
+    @Override
+    public boolean isReferenceTracking(){
+        TableBlock tableBlock = getParentInstance(TableBlock.class);
+        return tableBlock == null || tableBlock.isReferenceTracking();
+    }
+    @Override
+    void onPreListUnusedStrings(){
+        PackageBlock packageBlock = getPackageBlock();
+        if(packageBlock!=null){
+            packageBlock.parseLazyEntries();
+        }
+    }
 }
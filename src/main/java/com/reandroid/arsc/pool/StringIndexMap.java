@@ -0,0 +1,255 @@
+ /*
+  *  Copyright (C) 2022 github.com/REAndroid
+  *
+  *  Licensed under the Apache License, Version 2.0 (the "License");
+  *  you may not use this file except in compliance with the License.
+  *  You may obtain a copy of the License at
+  *
+  *      http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package com.reandroid.arsc.pool;
+
+import com.reandroid.arsc.array.StringArray;
+import com.reandroid.arsc.group.StringGroup;
+import com.reandroid.arsc.item.StringItem;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Lookup of strings by value (html), an open-addressed table of string hashes and indexes (int arrays)
+ * pointing the first item of each string. A {@link StringGroup} is allocated only for strings having
+ * more than one item.
+ * Appending strings updates the table in place, on other modifications call {@link #invalidate()}
+ * and the table is rebuilt on next lookup. A slot found pointing a different string (e.g strings
+ * shifted without invalidating) also triggers a rebuild.
+ * */
+class StringIndexMap<T extends StringItem> {
+    private final StringArray<T> mStringArray;
+    private int[] mHashes;
+    private int[] mIndexes;
+    private int mSize;
+    private Map<String, StringGroup<T>> mDuplicates;
+    private boolean mStale;
+
+    StringIndexMap(StringArray<T> stringArray){
+        this.mStringArray = stringArray;
+    }
+    void invalidate(){
+        mHashes = null;
+        mIndexes = null;
+        mSize = 0;
+        mDuplicates = null;
+        mStale = true;
+    }
+    boolean contains(String str){
+        return get(str) != null;
+    }
+    T get(String str){
+        if(str == null){
+            return null;
+        }
+        int slot = find(str);
+        if(slot < 0){
+            return null;
+        }
+        return mStringArray.get(mIndexes[slot] - 1);
+    }
+    StringGroup<T> getGroup(String str){
+        T item = get(str);
+        if(item == null){
+            return null;
+        }
+        Map<String, StringGroup<T>> duplicates = mDuplicates;
+        if(duplicates != null){
+            StringGroup<T> group = duplicates.get(str);
+            if(group != null){
+                return group;
+            }
+        }
+        StringGroup<T> group = new StringGroup<>(mStringArray, str);
+        group.add(item);
+        return group;
+    }
+    /**
+     * Adds item appended or set after the last update, does nothing if the table is to be rebuilt anyway
+     * */
+    void add(T item){
+        if(item == null || mStale){
+            return;
+        }
+        int index = item.getIndex();
+        String str = item.getHtml();
+        if(index < 0 || str == null){
+            return;
+        }
+        ensureTable();
+        put(str, str.hashCode(), index);
+    }
+    /**
+     * Adds item inserted at its index, indexes of the following items are shifted by one
+     * */
+    void insert(T item){
+        if(item == null || mStale){
+            return;
+        }
+        int index = item.getIndex() + 1;
+        int[] indexes = mIndexes;
+        if(indexes != null){
+            int length = indexes.length;
+            for(int i = 0; i < length; i++){
+                if(indexes[i] >= index){
+                    indexes[i]++;
+                }
+            }
+        }
+        add(item);
+    }
+    private int find(String str){
+        if(mStale){
+            build();
+        }
+        int slot = lookup(str);
+        if(slot == STALE){
+            build();
+            slot = lookup(str);
+        }
+        return slot;
+    }
+    private int lookup(String str){
+        int[] hashes = mHashes;
+        if(hashes == null){
+            return -1;
+        }
+        int[] indexes = mIndexes;
+        int hash = str.hashCode();
+        int mask = hashes.length - 1;
+        int slot = spread(hash) & mask;
+        int index;
+        while ((index = indexes[slot]) != 0){
+            if(hashes[slot] == hash){
+                T item = mStringArray.get(index - 1);
+                String exist = item != null ? item.getHtml() : null;
+                if(str.equals(exist)){
+                    return slot;
+                }
+                if(exist == null || exist.hashCode() != hash){
+                    return STALE;
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+    private void build(){
+        mStale = false;
+        mHashes = null;
+        mIndexes = null;
+        mSize = 0;
+        mDuplicates = null;
+        StringArray<T> stringArray = mStringArray;
+        int count = stringArray.childesCount();
+        if(count == 0){
+            return;
+        }
+        allocate(count);
+        for(int i = 0; i < count; i++){
+            T item = stringArray.get(i);
+            if(item == null){
+                continue;
+            }
+            String str = item.getHtml();
+            if(str == null){
+                continue;
+            }
+            put(str, str.hashCode(), i);
+        }
+    }
+    private void put(String str, int hash, int index){
+        int[] hashes = mHashes;
+        int[] indexes = mIndexes;
+        int mask = hashes.length - 1;
+        int slot = spread(hash) & mask;
+        int exist;
+        while ((exist = indexes[slot]) != 0){
+            if(hashes[slot] == hash){
+                T item = mStringArray.get(exist - 1);
+                if(item != null && str.equals(item.getHtml())){
+                    if(exist - 1 != index){
+                        addDuplicate(str, item, mStringArray.get(index));
+                    }
+                    return;
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+        hashes[slot] = hash;
+        indexes[slot] = index + 1;
+        mSize++;
+        if(mSize * 4 > hashes.length * 3){
+            rehash(hashes.length << 1);
+        }
+    }
+    private void addDuplicate(String str, T first, T item){
+        Map<String, StringGroup<T>> duplicates = mDuplicates;
+        if(duplicates == null){
+            duplicates = new HashMap<>();
+            mDuplicates = duplicates;
+        }
+        StringGroup<T> group = duplicates.get(str);
+        if(group == null){
+            group = new StringGroup<>(mStringArray, str);
+            group.add(first);
+            duplicates.put(str, group);
+        }
+        if(!group.contains(item)){
+            group.add(item);
+        }
+    }
+    private void ensureTable(){
+        if(mHashes == null){
+            allocate(mStringArray.childesCount());
+        }
+    }
+    private void allocate(int count){
+        int capacity = 16;
+        while (capacity < count * 2){
+            capacity <<= 1;
+        }
+        mHashes = new int[capacity];
+        mIndexes = new int[capacity];
+    }
+    private void rehash(int capacity){
+        int[] hashes = mHashes;
+        int[] indexes = mIndexes;
+        int[] hashesNew = new int[capacity];
+        int[] indexesNew = new int[capacity];
+        int mask = capacity - 1;
+        for(int i = 0; i < hashes.length; i++){
+            int index = indexes[i];
+            if(index == 0){
+                continue;
+            }
+            int hash = hashes[i];
+            int slot = spread(hash) & mask;
+            while (indexesNew[slot] != 0){
+                slot = (slot + 1) & mask;
+            }
+            hashesNew[slot] = hash;
+            indexesNew[slot] = index;
+        }
+        mHashes = hashesNew;
+        mIndexes = indexesNew;
+    }
+    private static int spread(int hash){
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final int STALE = -2;
+}
@@ -35,7 +35,7 @@ package com.reandroid.arsc.pool;
     private final StringArray<T> mArrayStrings;
     private final StyleArray mArrayStyles;
 
-    private final Map<String, StringGroup<T>> mUniqueMap;
+    private final StringIndexMap<T> mUniqueIdMap;
 
     StringPool(boolean is_utf8){
         super(new StringPoolHeader(), 4);
@@ -66,7 +66,7 @@ package com.reandroid.arsc.pool;
 
         header.getFlagUtf8().setBlockLoad(this);
 
-        mUniqueMap = new HashMap<>();
+        mUniqueIdMap = new StringIndexMap<>(mArrayStrings);
     }
     public List<String> toStringList(){
         return getStringsArray().toStringList();
@@ -75,18 +75,13 @@ package com.reandroid.arsc.pool;
         if(stringList==null || stringList.size()==0){
             return;
         }
-        Set<String> uniqueSet;
-        if(stringList instanceof HashSet){
-            uniqueSet=(HashSet<String>)stringList;
-        }else {
-            uniqueSet=new HashSet<>(stringList);
-        }
-        refreshUniqueIdMap();
-        Set<String> keySet=mUniqueMap.keySet();
-        for(String key:keySet){
-            uniqueSet.remove(key);
+        Set<String> uniqueSet=new HashSet<>(stringList.size());
+        List<String> sortedList=new ArrayList<>(stringList.size());
+        for(String str:stringList){
+            if(str!=null && !contains(str) && uniqueSet.add(str)){
+                sortedList.add(str);
+            }
         }
-        List<String> sortedList=new ArrayList<>(stringList);
         sortedList.sort(this);
         insertStringList(sortedList);
     }
@@ -99,9 +94,9 @@ package com.reandroid.arsc.pool;
         for (int i=initialSize;i<size;i++){
             T item=stringsArray.get(i);
             item.set(stringList.get(j));
+            mUniqueIdMap.add(item);
             j++;
         }
-        refreshUniqueIdMap();
     }
     public Map<String, T> insertStrings(List<String> stringList){
         Map<String, T> results=new HashMap<>();
@@ -114,45 +109,128 @@ package com.reandroid.arsc.pool;
             T item=stringsArray.get(i);
             String str=stringList.get(j);
             item.set(str);
+            mUniqueIdMap.add(item);
             results.put(str, item);
             j++;
         }
-        refreshUniqueIdMap();
         return results;
     }
-    // call this after modifying string values
+    // call this after modifying or moving strings, the map is rebuilt on next lookup
     public void refreshUniqueIdMap(){
-        mUniqueMap.clear();
-        T[] stringsArray = getStrings();
-        if(stringsArray==null){
-            return;
-        }
-        for(int i=0;i<stringsArray.length;i++){
-            T item=stringsArray[i];
-            if(item==null){
+        mUniqueIdMap.invalidate();
+    }
+    void updateUniqueIdMap(T item){
+        mUniqueIdMap.add(item);
+    }
+    // for item inserted in the middle, the following strings are shifted by one
+    void updateUniqueIdMapInserted(T item){
+        mUniqueIdMap.insert(item);
+    }
+    public List<T> removeUnusedStrings(){
+        return compact(false);
+    }
+    /**
+     * Removes unused strings and re-orders the rest at once: styled strings first, each keeping its
+     * style, followed by the others optionally sorted by {@link #compare(String, String)}.
+     * Styles of removed strings are released first, so that strings used only as span tags
+     * are removed too. Each kept string gets its new index once, thus each reference is updated
+     * once instead of on every shift. Returns the removed strings.
+     * */
+    public List<T> compact(boolean sort){
+        checkReferenceTracking();
+        onPreListUnusedStrings();
+        StringArray<T> stringsArray = getStringsArray();
+        StyleArray styleArray = getStyleArray();
+        T[] strings = stringsArray.getChildes();
+        StyleItem[] styles = styleArray.getChildes();
+        int count = strings.length;
+        int styleCount = Math.min(styles.length, count);
+        int fixed = Math.min(countFixedPositions(), count);
+        boolean[] styled = new boolean[count];
+        for(int i = fixed; i < styleCount; i++){
+            StyleItem styleItem = styles[i];
+            if(styleItem.getSpanInfoList().size() == 0){
                 continue;
             }
-            String str=item.getHtml();
-            if(str==null){
-                continue;
+            if(strings[i].hasReference()){
+                styled[i] = true;
+            }else {
+                styleItem.setNull(true);
+            }
+        }
+        List<T> kept = new ArrayList<>(count);
+        List<T> unStyled = new ArrayList<>();
+        List<T> removed = new ArrayList<>();
+        List<StyleItem> keptStyles = new ArrayList<>(styleCount);
+        for(int i = 0; i < count; i++){
+            T item = strings[i];
+            if(i < fixed){
+                kept.add(item);
+                if(i < styleCount){
+                    keptStyles.add(styles[i]);
+                }
+            }else if(styled[i]){
+                kept.add(item);
+                keptStyles.add(styles[i]);
+            }else if(item.hasReference()){
+                unStyled.add(item);
+            }else {
+                removed.add(item);
             }
-            StringGroup<T> group= getOrCreateGroup(str);
-            group.add(item);
         }
+        if(sort){
+            unStyled.sort(new Comparator<T>() {
+                @Override
+                public int compare(T item1, T item2) {
+                    return compareNullFirst(item1.get(), item2.get());
+                }
+            });
+        }
+        kept.addAll(unStyled);
+        stringsArray.replaceChildes(kept.toArray(stringsArray.newInstance(kept.size())));
+        styleArray.replaceChildes(keptStyles.toArray(new StyleItem[0]));
+        refreshUniqueIdMap();
+        return removed;
     }
-    void updateUniqueIdMap(T item){
-        if(item==null){
-            return;
+    private int compareNullFirst(String s1, String s2){
+        if(s1 == null){
+            return s2 == null ? 0 : -1;
+        }
+        if(s2 == null){
+            return 1;
         }
-        StringGroup<T> group = getOrCreateGroup(item.getHtml());
-        group.add(item);
+        return compare(s1, s2);
     }
-    public List<T> removeUnusedStrings(){
-        return getStringsArray().removeUnusedStrings();
+    /**
+     * Number of leading strings whose positions are bound to something else
+     * (e.g xml attribute names to resource ids), not moved or removed by {@link #compact(boolean)}
+     * */
+    int countFixedPositions(){
+        return 0;
     }
     public List<T> listUnusedStrings(){
+        checkReferenceTracking();
+        onPreListUnusedStrings();
         return getStringsArray().listUnusedStrings();
     }
+    /**
+     * When false, strings do not keep their references (see {@link StringItem#addReference(ReferenceItem)}),
+     * intended for read-only loads. Unused strings can not be determined and string indexes
+     * must not be changed since references are not updated.
+     * */
+    public boolean isReferenceTracking(){
+        return true;
+    }
+    private void checkReferenceTracking(){
+        if(!isReferenceTracking()){
+            throw new IllegalStateException("References are not tracked on: " + getClass().getSimpleName());
+        }
+    }
+    /**
+     * Called before listing unused strings, so that lazily loaded references can be linked first
+     * */
+    void onPreListUnusedStrings(){
+    }
     public Collection<T> listStrings(){
         return getStringsArray().listItems();
     }
@@ -200,32 +278,21 @@ package com.reandroid.arsc.pool;
     }
 
     public boolean contains(String str){
-        return mUniqueMap.containsKey(str);
+        return mUniqueIdMap.contains(str);
     }
     public final T get(int index){
         return mArrayStrings.get(index);
     }
     public final StringGroup<T> get(String str){
-        return mUniqueMap.get(str);
+        return mUniqueIdMap.getGroup(str);
     }
     public T getOrCreate(String str){
-        StringGroup<T> group=getOrCreateGroup(str);
-        T[] items=group.getItems();
-        if(items.length==0){
-            T t=createNewString(str);
-            group.add(t);
-            items=group.getItems();
-        }
-        return items[0];
-    }
-    private StringGroup<T> getOrCreateGroup(String str){
-        StringGroup<T> group=get(str);
-        if(group!=null){
-            return group;
+        T item=mUniqueIdMap.get(str);
+        if(item==null){
+            item=createNewString(str);
+            mUniqueIdMap.add(item);
         }
-        group=new StringGroup<>(mArrayStrings, str);
-        mUniqueMap.put(str, group);
-        return group;
+        return item;
     }
     private T createNewString(String str){
         T item=mArrayStrings.createNext();
@@ -267,6 +334,16 @@ package com.reandroid.arsc.pool;
         }
         mArrayStrings.setUtf8(is_utf8);
     }
+    /**
+     * Layout option, bytes of equal strings are written once and shared by offset
+     * (see {@link StringArray#setShareDuplicates(boolean)})
+     * */
+    public void setShareDuplicates(boolean shareDuplicates){
+        mArrayStrings.setShareDuplicates(shareDuplicates);
+    }
+    public boolean isShareDuplicates(){
+        return mArrayStrings.isShareDuplicates();
+    }
     public void setFlagSorted(boolean sorted){
         getHeaderBlock().setSorted(sorted);
     }
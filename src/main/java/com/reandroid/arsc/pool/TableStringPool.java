@@ -18,6 +18,7 @@ package com.reandroid.arsc.pool;
 import com.reandroid.arsc.array.StringArray;
 import com.reandroid.arsc.array.TableStringArray;
 import com.reandroid.arsc.chunk.ChunkType;
+import com.reandroid.arsc.chunk.TableBlock;
 import com.reandroid.arsc.chunk.UnknownChunk;
 import com.reandroid.arsc.header.HeaderBlock;
 import com.reandroid.arsc.header.TableHeader;
@@ -38,6 +39,18 @@ import java.io.InputStream;
     StringArray<TableString> newInstance(IntegerArray offsets, IntegerItem itemCount, IntegerItem itemStart, boolean is_utf8) {
         return new TableStringArray(offsets, itemCount, itemStart, is_utf8);
     }
+    @Override
+    public boolean isReferenceTracking(){
+        TableBlock tableBlock = getParentInstance(TableBlock.class);
+        return tableBlock == null || tableBlock.isReferenceTracking();
+    }
+    @Override
+    void onPreListUnusedStrings(){
+        TableBlock tableBlock = getParentInstance(TableBlock.class);
+        if(tableBlock!=null){
+            tableBlock.parseLazyEntries();
+        }
+    }
     public void merge(TableStringPool stringPool){
         if(stringPool==null||stringPool==this){
             return;
@@ -22,16 +22,28 @@ import com.reandroid.arsc.item.TableString;
 import com.reandroid.arsc.model.StyleSpanInfo;
 import com.reandroid.arsc.pool.TableStringPool;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.*;
+import java.util.concurrent.*;
 
 public class StringPoolMerger implements Comparator<String> {
     private final Set<TableStringPool> mPools;
+    private ExecutorService mExecutorService;
     private int mMergedPools;
     private int mMergedStrings;
     private int mMergedStyleStrings;
     public StringPoolMerger(){
         this.mPools=new HashSet<>();
     }
+    /**
+     * When set, strings of each pool are collected concurrently on the given executor and
+     * sorted by {@link Arrays#parallelSort(Object[], Comparator)}. The merged pool is identical
+     * to sequential mode. The executor is not shutdown by this class.
+     * */
+    public void setExecutorService(ExecutorService executorService){
+        this.mExecutorService=executorService;
+    }
     public void mergeTo(TableStringPool destination){
         mMergedPools=0;
         mMergedStrings=0;
@@ -39,8 +51,31 @@ public class StringPoolMerger implements Comparator<String> {
         if(destination.countStrings()>0 || destination.countStyles()>0){
             throw new IllegalArgumentException("Destination string pool is not empty");
         }
-        mergeStyledStrings(destination);
-        mergeNonStyledStrings(destination);
+        ExecutorService executorService=mExecutorService;
+        Map<String, TableString> styledStrings;
+        Set<String> nonStyledStrings;
+        if(executorService!=null){
+            styledStrings=new ConcurrentHashMap<>();
+            nonStyledStrings=ConcurrentHashMap.newKeySet();
+            try {
+                collectStrings(executorService, styledStrings, nonStyledStrings);
+            } catch (IOException ex) {
+                throw new IllegalStateException("Failed to collect strings", ex);
+            }
+        }else {
+            styledStrings=new HashMap<>();
+            nonStyledStrings=new HashSet<>();
+            for(TableStringPool pool:mPools){
+                collectStrings(pool, styledStrings, nonStyledStrings);
+            }
+        }
+        String[] sortedStrings=nonStyledStrings.toArray(new String[0]);
+        if(executorService!=null){
+            Arrays.parallelSort(sortedStrings, this);
+        }else {
+            Arrays.sort(sortedStrings, this);
+        }
+        merge(destination, sortStyledStrings(styledStrings), sortedStrings);
         mMergedPools = mPools.size();
         mPools.clear();
         destination.refresh();
@@ -58,25 +93,63 @@ public class StringPoolMerger implements Comparator<String> {
         return mMergedStrings;
     }
 
-    private void mergeStyledStrings(TableStringPool destination){
-        List<TableString> styledStrings = getStyledStrings();
-        Map<String, TableString> mapTableStrings =
-                destination.insertStrings(toStringList(styledStrings));
-        Map<String, TableString> mapTags =
-                destination.insertStrings(listStyleTags(styledStrings));
+    /**
+     * Orders styled strings by text then by html, independent of the order pools are collected
+     * */
+    private List<TableString> sortStyledStrings(Map<String, TableString> styledStrings){
+        List<Map.Entry<String, TableString>> entryList = new ArrayList<>(styledStrings.entrySet());
+        entryList.sort(new Comparator<Map.Entry<String, TableString>>() {
+            @Override
+            public int compare(Map.Entry<String, TableString> entry1, Map.Entry<String, TableString> entry2) {
+                int i = StringPoolMerger.this.compare(entry1.getValue().get(), entry2.getValue().get());
+                if(i != 0){
+                    return i;
+                }
+                return StringPoolMerger.this.compare(entry1.getKey(), entry2.getKey());
+            }
+        });
+        List<TableString> results = new ArrayList<>(entryList.size());
+        for(Map.Entry<String, TableString> entry:entryList){
+            results.add(entry.getValue());
+        }
+        return results;
+    }
+    /**
+     * Inserts styled strings, style tags and the rest in this order with one ensureSize
+     * */
+    private void merge(TableStringPool destination, List<TableString> styledStrings, String[] nonStyledStrings){
+        List<String> styleTags = listStyleTags(styledStrings);
+        int styledCount = styledStrings.size();
+        int tagsCount = styleTags.size();
+
+        StringArray<TableString> stringArray = destination.getStringsArray();
+        stringArray.ensureSize(styledCount + tagsCount + nonStyledStrings.length);
+        for(int i=0;i<styledCount;i++){
+            stringArray.get(i).set(styledStrings.get(i).get());
+        }
+        Map<String, Integer> mapTags = new HashMap<>();
+        for(int i=0;i<tagsCount;i++){
+            String tag = styleTags.get(i);
+            int index = styledCount + i;
+            stringArray.get(index).set(tag);
+            mapTags.put(tag, index);
+        }
+        int start = styledCount + tagsCount;
+        for(int i=0;i<nonStyledStrings.length;i++){
+            stringArray.get(start + i).set(nonStyledStrings[i]);
+        }
+        destination.refreshUniqueIdMap();
 
         StyleArray styleArray = destination.getStyleArray();
-        styleArray.setChildesCount(styledStrings.size());
+        styleArray.setChildesCount(styledCount);
 
-        for(TableString tableString:styledStrings){
-            TableString createdString = mapTableStrings.get(tableString.get());
-            StyleItem createdStyle = styleArray.get(createdString.getIndex());
+        for(int i=0;i<styledCount;i++){
+            StyleItem createdStyle = styleArray.get(i);
 
-            StyleItem styleItem = tableString.getStyle();
+            StyleItem styleItem = styledStrings.get(i).getStyle();
             for(StyleSpanInfo spanInfo:styleItem.getSpanInfoList()){
                 if(spanInfo!=null && createdStyle!=null){
-                    int tagReference = mapTags.get(spanInfo.getTag())
-                            .getIndex();
+                    int tagReference = mapTags.get(spanInfo.getTag());
                     createdStyle.addStylePiece(
                             tagReference,
                             spanInfo.getFirst(),
@@ -85,56 +158,59 @@ public class StringPoolMerger implements Comparator<String> {
             }
         }
         mMergedStyleStrings=styledStrings.size();
+        mMergedStrings=nonStyledStrings.length;
     }
-    private void mergeNonStyledStrings(TableStringPool destination){
-        List<String> nonStyledStrings=getNonStyledStrings();
-        destination.insertStrings(nonStyledStrings);
-        mMergedStrings=nonStyledStrings.size();
-    }
-    private List<TableString> getStyledStrings(){
-        Map<String, TableString> mapUniqueHtml = new HashMap<>();
-        for(TableStringPool pool:mPools){
-            int styleCount = pool.countStyles();
-            StringArray<TableString> stringArray = pool.getStringsArray();
-            for(int i=0;i<styleCount;i++){
-                TableString tableString = stringArray.get(i);
-                if(tableString==null || !tableString.hasStyle()){
-                    continue;
-                }
-                mapUniqueHtml.put(tableString.getHtml(), tableString);
+    private void collectStrings(ExecutorService executorService, Map<String, TableString> styledStrings,
+                                Set<String> nonStyledStrings) throws IOException {
+        List<Future<Void>> futures=new ArrayList<>(mPools.size());
+        try {
+            for(TableStringPool pool:mPools){
+                futures.add(executorService.submit(new CollectTask(pool, styledStrings, nonStyledStrings)));
+            }
+            for(Future<Void> future:futures){
+                awaitResult(future);
+            }
+        }finally {
+            for(Future<Void> future:futures){
+                future.cancel(true);
             }
         }
-        return new ArrayList<>(mapUniqueHtml.values());
     }
-    private List<String> getNonStyledStrings(){
-        Set<String> uniqueSet = new HashSet<>();
-        for(TableStringPool pool:mPools){
-            TableString[] tableStrings = pool.getStrings();
-            if(tableStrings==null){
+    private static void collectStrings(TableStringPool pool, Map<String, TableString> styledStrings,
+                                       Set<String> nonStyledStrings){
+        TableString[] tableStrings = pool.getStrings();
+        if(tableStrings==null){
+            return;
+        }
+        int styleCount = pool.countStyles();
+        for(int i=0;i<tableStrings.length;i++){
+            TableString tableString=tableStrings[i];
+            if(tableString==null){
                 continue;
             }
-            for(int i=0;i<tableStrings.length;i++){
-                TableString tableString=tableStrings[i];
-                if(tableString==null || tableString.hasStyle()){
-                    continue;
-                }
-                uniqueSet.add(tableString.get());
+            if(i<styleCount && tableString.hasStyle()){
+                styledStrings.put(tableString.getHtml(), tableString);
+                continue;
             }
-        }
-        List<String> results=new ArrayList<>(uniqueSet);
-        results.sort(this);
-        return results;
-    }
-    private List<String> toStringList(Collection<TableString> tableStringList){
-        List<String> results=new ArrayList<>(tableStringList.size());
-        for(TableString tableString:tableStringList){
             String str=tableString.get();
             if(str!=null){
-                results.add(str);
+                nonStyledStrings.add(str);
             }
         }
-        results.sort(this);
-        return results;
+    }
+    private static void awaitResult(Future<Void> future) throws IOException{
+        try {
+            future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(ex.getMessage());
+        } catch (ExecutionException ex) {
+            Throwable cause=ex.getCause();
+            if(cause instanceof RuntimeException){
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
     }
     private List<String> listStyleTags(List<TableString> styledStrings){
         Set<String> resultSet=new HashSet<>();
@@ -157,4 +233,20 @@ public class StringPoolMerger implements Comparator<String> {
     public int compare(String s1, String s2) {
         return s1.compareTo(s2);
     }
+
+    private static class CollectTask implements Callable<Void> {
+        private final TableStringPool pool;
+        private final Map<String, TableString> styledStrings;
+        private final Set<String> nonStyledStrings;
+        CollectTask(TableStringPool pool, Map<String, TableString> styledStrings, Set<String> nonStyledStrings){
+            this.pool=pool;
+            this.styledStrings=styledStrings;
+            this.nonStyledStrings=nonStyledStrings;
+        }
+        @Override
+        public Void call() {
+            collectStrings(pool, styledStrings, nonStyledStrings);
+            return null;
+        }
+    }
 }
@@ -151,8 +151,13 @@ public class FrameworkTable extends TableBlock {
         return writeBytes(outputStream);
     }
     public void readTable(File resourcesArscFile) throws IOException{
-        FileInputStream inputStream=new FileInputStream(resourcesArscFile);
-        readTable(inputStream);
+        BlockReader reader=new BlockReader(resourcesArscFile);
+        try {
+            super.readBytes(reader);
+        } finally {
+            // releases mapping of the file
+            reader.close();
+        }
     }
     public void readTable(InputStream inputStream) throws IOException{
         BlockReader reader=new BlockReader(inputStream);
@@ -255,6 +255,16 @@
          tableEntry.readBytes(reader);
      }
 
+     /**
+      * Links string references of header and values, required only for entries read
+      * while detached from parent (see {@link TableBlock#setExecutorService(java.util.concurrent.ExecutorService)})
+      * */
+     public void linkStringReferences(){
+         TableEntry<?, ?> tableEntry = getTableEntry();
+         if(tableEntry != null){
+             tableEntry.linkStringReferences();
+         }
+     }
      public boolean isComplex(){
          return getTableEntry() instanceof ResTableMapEntry;
      }
@@ -58,7 +58,7 @@ public class LibraryInfo extends Block implements JSONConvert<JSONObject> {
         if(isNull()){
             return null;
         }
-        return addBytes(mPackageId.getBytes(), mPackageName.getBytes());
+        return writeBytesToArray();
     }
     @Override
     public int countBytes() {
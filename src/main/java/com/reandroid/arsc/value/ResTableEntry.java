@@ -22,6 +22,11 @@ public class ResTableEntry extends TableEntry<EntryHeader, ResValue> {
         super(new EntryHeader(), new ResValue());
     }
 
+    @Override
+    void linkStringReferences(){
+        super.linkStringReferences();
+        getValue().onDataLoaded();
+    }
     @Override
     void onRemoved(){
         getHeader().onRemoved();
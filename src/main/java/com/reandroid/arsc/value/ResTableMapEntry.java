@@ -46,6 +46,13 @@ public class ResTableMapEntry extends TableEntry<EntryHeaderMap, ResValueMapArra
         getValue().setChildesCount(getValuesCount());
     }
 
+    @Override
+    void linkStringReferences(){
+        super.linkStringReferences();
+        for(ResValueMap resValueMap:listResValueMap()){
+            resValueMap.onDataLoaded();
+        }
+    }
     @Override
     void onRemoved(){
         getHeader().onRemoved();
@@ -53,9 +53,7 @@ public abstract class TableEntry<HEADER extends ValueHeader, VALUE extends Block
 
     @Override
     public byte[] getBytes() {
-        byte[] results = getHeader().getBytes();
-        results = addBytes(results, getValue().getBytes());
-        return results;
+        return writeBytesToArray();
     }
     @Override
     public int countBytes() {
@@ -94,6 +92,9 @@ public abstract class TableEntry<HEADER extends ValueHeader, VALUE extends Block
 
     void onHeaderLoaded(ValueHeader valueHeader){
     }
+    void linkStringReferences(){
+        getHeader().linkStringReference();
+    }
     abstract void onRemoved();
     abstract boolean shouldMerge(TableEntry<?, ?> tableEntry);
 
@@ -101,7 +101,7 @@ public class ValueHeader extends BlockItem implements JSONConvert<JSONObject> {
         }
     }
 
-    private void linkStringReference(){
+    void linkStringReference(){
         linkStringReference(getNameString());
     }
     private void linkStringReference(StringItem stringItem){
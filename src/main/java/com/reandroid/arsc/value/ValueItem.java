@@ -77,7 +77,7 @@ import java.io.IOException;
          int size = countBytes() - offset;
          putShort(getBytesInternal(), offset + OFFSET_SIZE, (short) size);
      }
-     private void onDataLoaded(){
+     void onDataLoaded(){
          if(getValueType() == ValueType.STRING){
              linkStringReference();
          }else {
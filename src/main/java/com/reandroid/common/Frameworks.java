@@ -23,7 +23,7 @@ import java.io.InputStream;
 public class Frameworks {
     private static FrameworkTable android_table;
     private static boolean load_once;
-    public static FrameworkTable getAndroid(){
+    public static synchronized FrameworkTable getAndroid(){
         if(android_table!=null || load_once){
             return android_table;
         }